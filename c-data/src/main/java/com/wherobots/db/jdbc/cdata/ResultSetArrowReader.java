@@ -0,0 +1,86 @@
+package com.wherobots.db.jdbc.cdata;
+
+import com.wherobots.db.jdbc.WherobotsResultSet;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link ArrowReader} over the batches of a {@link WherobotsResultSet}.
+ * <p>
+ * Rather than loading batches into a root of its own, this reader hands out the result set's roots and dictionaries
+ * as they are, so exporting it doesn't copy any data. Closing the reader closes the result set.
+ */
+class ResultSetArrowReader extends ArrowReader {
+
+    private final WherobotsResultSet resultSet;
+    private final DictionaryProvider dictionaries;
+
+    ResultSetArrowReader(WherobotsResultSet resultSet, BufferAllocator allocator) {
+        super(allocator);
+        this.resultSet = resultSet;
+        this.dictionaries = resultSet.getDictionaryProvider();
+    }
+
+    @Override
+    public VectorSchemaRoot getVectorSchemaRoot() {
+        return this.resultSet.getVectorSchemaRoot();
+    }
+
+    @Override
+    public boolean loadNextBatch() throws IOException {
+        try {
+            return this.resultSet.nextBatch() != null;
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public Dictionary lookup(long id) {
+        return this.dictionaries.lookup(id);
+    }
+
+    @Override
+    public Set<Long> getDictionaryIds() {
+        return this.dictionaries.getDictionaryIds();
+    }
+
+    @Override
+    public Map<Long, Dictionary> getDictionaryVectors() {
+        Map<Long, Dictionary> vectors = new HashMap<>();
+        for (long id : this.getDictionaryIds()) {
+            vectors.put(id, this.lookup(id));
+        }
+        return vectors;
+    }
+
+    @Override
+    public long bytesRead() {
+        // Not tracked: the bytes are read by the result set's own stream reader.
+        return 0;
+    }
+
+    @Override
+    protected void closeReadSource() throws IOException {
+        try {
+            this.resultSet.close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    protected Schema readSchema() {
+        return this.resultSet.getVectorSchemaRoot().getSchema();
+    }
+}
@@ -0,0 +1,68 @@
+package com.wherobots.db.jdbc.cdata;
+
+import com.wherobots.db.jdbc.WherobotsResultSet;
+import org.apache.arrow.c.ArrowArray;
+import org.apache.arrow.c.ArrowArrayStream;
+import org.apache.arrow.c.ArrowSchema;
+import org.apache.arrow.c.Data;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Exports the results of Wherobots queries through the
+ * <a href="https://arrow.apache.org/docs/format/CDataInterface.html">Arrow C Data Interface</a>, for native code to
+ * consume them in-process.
+ * <p>
+ * Exports share the result set's buffers with the consumer rather than copying or serializing them: each exported
+ * batch holds a reference on its buffers until the consumer releases it, so it remains valid after the result set
+ * moves on to its next batch, or is closed. The given allocator is only used for the bookkeeping of the exports.
+ */
+public final class ResultSetExporter {
+
+    private ResultSetExporter() {
+    }
+
+    /**
+     * Export the remaining batches of a result set as an {@code ArrowArrayStream}.
+     * <p>
+     * The stream takes ownership of the result set: its consumer pulls batches from it, and the result set is closed
+     * when the stream is released. The result set must not be used in the meantime.
+     *
+     * @param resultSet a result set of the Wherobots driver
+     * @param allocator the allocator for the bookkeeping of the export
+     * @param out       the C stream structure to export to
+     * @throws SQLException if the result set isn't a Wherobots result set
+     */
+    public static void exportArrayStream(ResultSet resultSet, BufferAllocator allocator, ArrowArrayStream out)
+            throws SQLException {
+        WherobotsResultSet results = resultSet.unwrap(WherobotsResultSet.class);
+        Data.exportArrayStream(allocator, new ResultSetArrowReader(results, allocator), out);
+    }
+
+    /**
+     * Advance a result set to its next batch, and export that batch as an {@code ArrowArray} of struct type along
+     * with its {@code ArrowSchema}. Rows of the current batch that have not been visited yet are skipped, see
+     * {@link WherobotsResultSet#nextBatch()}.
+     *
+     * @param resultSet a result set of the Wherobots driver
+     * @param allocator the allocator for the bookkeeping of the export
+     * @param array     the C array structure to export the batch to
+     * @param schema    the C schema structure to export the schema of the batch to
+     * @return false if there are no more batches, in which case nothing is exported
+     * @throws SQLException if the result set isn't a Wherobots result set, or its next batch can't be read
+     */
+    public static boolean exportNextBatch(ResultSet resultSet, BufferAllocator allocator, ArrowArray array,
+                                          ArrowSchema schema) throws SQLException {
+        WherobotsResultSet results = resultSet.unwrap(WherobotsResultSet.class);
+        VectorSchemaRoot batch = results.nextBatch();
+        if (batch == null) {
+            return false;
+        }
+
+        Data.exportVectorSchemaRoot(allocator, batch, results.getDictionaryProvider(), array, schema);
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+package com.wherobots.db.jdbc.cdata;
+
+import com.wherobots.db.jdbc.WherobotsResultSet;
+import org.apache.arrow.c.ArrowArray;
+import org.apache.arrow.c.ArrowArrayStream;
+import org.apache.arrow.c.ArrowSchema;
+import org.apache.arrow.c.CDataDictionaryProvider;
+import org.apache.arrow.c.Data;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trips result sets through the C Data Interface structures, in-process.
+ */
+class ResultSetExporterTest {
+
+    private static final String[] COUNTRIES = {"FR", "US"};
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        this.allocator = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Fails on any buffer left behind by the exports.
+        this.allocator.close();
+    }
+
+    /**
+     * Builds a result set over two batches, of 3 and 2 rows, with an id column and a dictionary-encoded country
+     * column alternating between US and FR.
+     */
+    private ResultSet resultSet() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictionaryEncoding encoding = new DictionaryEncoding(1L, false, null);
+        try (VarCharVector countries = new VarCharVector("countries", this.allocator);
+             IntVector ids = new IntVector("id", this.allocator);
+             IntVector codes = new IntVector("country",
+                     new FieldType(true, new ArrowType.Int(32, true), encoding), this.allocator);
+             VectorSchemaRoot root = new VectorSchemaRoot(List.of(ids, codes))) {
+            countries.allocateNew();
+            for (int i = 0; i < COUNTRIES.length; i++) {
+                countries.set(i, COUNTRIES[i].getBytes(StandardCharsets.UTF_8));
+            }
+            countries.setValueCount(COUNTRIES.length);
+            DictionaryProvider dictionaries =
+                    new DictionaryProvider.MapDictionaryProvider(new Dictionary(countries, encoding));
+
+            try (ArrowStreamWriter writer = new ArrowStreamWriter(root, dictionaries, out)) {
+                writer.start();
+                int id = 0;
+                for (int size : new int[]{3, 2}) {
+                    ids.allocateNew(size);
+                    codes.allocateNew(size);
+                    for (int i = 0; i < size; i++, id++) {
+                        ids.set(i, id);
+                        codes.set(i, (id + 1) % 2);
+                    }
+                    root.setRowCount(size);
+                    writer.writeBatch();
+                }
+                writer.end();
+            }
+        }
+
+        return new WherobotsResultSet(null,
+                new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), this.allocator));
+    }
+
+    private static String country(FieldVector codes, DictionaryProvider dictionaries, int row) {
+        Dictionary dictionary = dictionaries.lookup(codes.getField().getDictionary().getId());
+        try (ValueVector decoded = DictionaryEncoder.decode(codes, dictionary)) {
+            return decoded.getObject(row).toString();
+        }
+    }
+
+    @Test
+    void exportArrayStream() throws Exception {
+        ResultSet rs = this.resultSet();
+        try (ArrowArrayStream stream = ArrowArrayStream.allocateNew(this.allocator)) {
+            ResultSetExporter.exportArrayStream(rs, this.allocator, stream);
+
+            try (ArrowReader imported = Data.importArrayStream(this.allocator, stream)) {
+                VectorSchemaRoot root = imported.getVectorSchemaRoot();
+                assertEquals(List.of("id", "country"),
+                        root.getSchema().getFields().stream().map(f -> f.getName()).toList());
+
+                assertTrue(imported.loadNextBatch());
+                assertEquals(3, root.getRowCount());
+                assertEquals(2, ((IntVector) root.getVector("id")).get(2));
+                assertEquals("US", country(root.getVector("country"), imported, 0));
+                assertEquals("FR", country(root.getVector("country"), imported, 1));
+
+                assertTrue(imported.loadNextBatch());
+                assertEquals(2, root.getRowCount());
+                assertEquals(4, ((IntVector) root.getVector("id")).get(1));
+                assertEquals("FR", country(root.getVector("country"), imported, 0));
+
+                assertFalse(imported.loadNextBatch());
+            }
+        }
+
+        // Releasing the stream closes the result set.
+        assertTrue(rs.isClosed());
+    }
+
+    @Test
+    void exportNextBatch() throws Exception {
+        try (ArrowArray array = ArrowArray.allocateNew(this.allocator);
+             ArrowSchema schema = ArrowSchema.allocateNew(this.allocator);
+             CDataDictionaryProvider dictionaries = new CDataDictionaryProvider()) {
+            try (ResultSet rs = this.resultSet()) {
+                assertTrue(rs.next());
+                assertTrue(rs.next());
+
+                // Skips the last row of the first batch.
+                assertTrue(ResultSetExporter.exportNextBatch(rs, this.allocator, array, schema));
+                assertEquals(5, rs.getRow());
+            }
+
+            // The exported batch outlives the result set.
+            try (VectorSchemaRoot root = Data.importVectorSchemaRoot(this.allocator, array, schema, dictionaries)) {
+                assertEquals(2, root.getRowCount());
+                assertEquals(3, ((IntVector) root.getVector("id")).get(0));
+                assertEquals("FR", country(root.getVector("country"), dictionaries, 0));
+                assertEquals("US", country(root.getVector("country"), dictionaries, 1));
+            }
+        }
+    }
+}
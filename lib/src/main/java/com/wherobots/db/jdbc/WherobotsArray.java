@@ -0,0 +1,221 @@
+package com.wherobots.db.jdbc;
+
+import com.wherobots.db.jdbc.internal.ColumnAccessor;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import java.sql.Array;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.Map;
+
+/**
+ * A list value of a result set, viewing its elements in the column's vector rather than copying them: elements are
+ * only converted when read, and only those read.
+ * <p>
+ * The view reads from the batch holding its row, and is only valid until the result set moves on to another batch:
+ * reading it afterwards throws an {@link SQLException}.
+ * {@link #get(int)} and {@link #get(int, Class)} read single elements, the latter also as nested views with
+ * {@link Array} or {@link java.sql.Struct}.
+ * </p>
+ * <p>
+ * Arrays of doubles and floats without nulls, such as embeddings or coordinates, are returned by
+ * {@link #getArray()} as {@code double[]} and {@code float[]}, copied in bulk from the vector rather than boxed one
+ * by one; all others are returned as {@code Object[]}.
+ * </p>
+ */
+public final class WherobotsArray implements Array {
+
+    private final ColumnAccessor column;
+    private final int generation;
+    private final Field field;
+    private final ColumnAccessor elements;
+    private final int offset;
+    private final int length;
+
+    /**
+     * @param column   the accessor this array was read with, bound to the batch holding it
+     * @param field    the field of the elements
+     * @param elements the accessor of the elements, bound to the vector holding them
+     * @param offset   the index of the first element of this array in that vector
+     * @param length   the number of elements of this array
+     */
+    public WherobotsArray(ColumnAccessor column, Field field, ColumnAccessor elements, int offset, int length) {
+        this.column = column;
+        this.generation = column.generation();
+        this.field = field;
+        this.elements = elements;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the number of elements of this array
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Read a single element of this array.
+     * <p>
+     * This is a Wherobots-specific extension.
+     *
+     * @param index the 0-based index of the element
+     * @return the element, converted like {@link ResultSet#getObject(int)} would
+     */
+    public Object get(int index) throws SQLException {
+        int element = this.element(index);
+        return this.elements.isNull(element) ? null : this.elements.getObject(element);
+    }
+
+    /**
+     * Read a single element of this array as the given type.
+     * <p>
+     * This is a Wherobots-specific extension.
+     *
+     * @param index the 0-based index of the element
+     * @param type  the type to read the element as, like {@link ResultSet#getObject(int, Class)} would
+     * @return the element
+     */
+    public <T> T get(int index, Class<T> type) throws SQLException {
+        int element = this.element(index);
+        return this.elements.isNull(element) ? null : this.elements.getObject(element, type);
+    }
+
+    private int element(int index) throws SQLException {
+        this.checkBatch();
+        if (index < 0 || index >= this.length) {
+            throw new SQLException(String.format(
+                    "Can't get element at index %d from array of %d elements", index, this.length));
+        }
+        return this.offset + index;
+    }
+
+    @Override
+    public String getBaseTypeName() {
+        return JDBCType.valueOf(this.getBaseType()).getName();
+    }
+
+    @Override
+    public int getBaseType() {
+        ArrowType type = this.field.getType();
+        return switch (type.getTypeID()) {
+            case Bool -> Types.BOOLEAN;
+            case Int -> switch (((ArrowType.Int) type).getBitWidth()) {
+                case 8 -> Types.TINYINT;
+                case 16 -> Types.SMALLINT;
+                case 32 -> Types.INTEGER;
+                default -> Types.BIGINT;
+            };
+            case FloatingPoint -> ((ArrowType.FloatingPoint) type).getPrecision() == FloatingPointPrecision.DOUBLE
+                    ? Types.DOUBLE
+                    : Types.REAL;
+            case Utf8, LargeUtf8 -> Types.VARCHAR;
+            case Binary, LargeBinary, FixedSizeBinary -> Types.VARBINARY;
+            case Date -> Types.DATE;
+            case Timestamp -> ((ArrowType.Timestamp) type).getTimezone() != null
+                    ? Types.TIMESTAMP_WITH_TIMEZONE
+                    : Types.TIMESTAMP;
+            case List, LargeList, FixedSizeList -> Types.ARRAY;
+            case Struct -> Types.STRUCT;
+            default -> Types.OTHER;
+        };
+    }
+
+    @Override
+    public Object getArray() throws SQLException {
+        return this.getArray(1, this.length);
+    }
+
+    @Override
+    public Object getArray(Map<String, Class<?>> map) throws SQLException {
+        checkTypeMap(map);
+        return this.getArray();
+    }
+
+    /**
+     * @return the elements from the given 1-based index on, up to count of them, converted
+     */
+    @Override
+    public Object getArray(long index, int count) throws SQLException {
+        this.checkBatch();
+        if (index < 1 || index > this.length + 1L || count < 0) {
+            throw new SQLException(String.format(
+                    "Can't get %d element(s) at index %d from array of %d elements", count, index, this.length));
+        }
+
+        int from = this.offset + (int) index - 1;
+        int length = (int) Math.min(count, this.length - index + 1);
+        if (this.field.getType() instanceof ArrowType.FloatingPoint type && !this.elements.anyNull(from, length)) {
+            switch (type.getPrecision()) {
+                case DOUBLE -> {
+                    double[] values = new double[length];
+                    this.elements.copyDoubles(from, values, 0, length);
+                    return values;
+                }
+                case SINGLE -> {
+                    float[] values = new float[length];
+                    this.elements.copyFloats(from, values, 0, length);
+                    return values;
+                }
+                default -> {
+                    // Half-precision floats have no accessor of their own: they are boxed like other types.
+                }
+            }
+        }
+
+        Object[] values = new Object[length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.get((int) index - 1 + i);
+        }
+        return values;
+    }
+
+    @Override
+    public Object getArray(long index, int count, Map<String, Class<?>> map) throws SQLException {
+        checkTypeMap(map);
+        return this.getArray(index, count);
+    }
+
+    private void checkBatch() throws SQLException {
+        if (this.column.generation() != this.generation) {
+            throw new SQLException("Array read after its result set moved on to another batch");
+        }
+    }
+
+    static void checkTypeMap(Map<String, Class<?>> map) throws SQLException {
+        if (map != null && !map.isEmpty()) {
+            throw new SQLFeatureNotSupportedException("Type maps are not supported");
+        }
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public ResultSet getResultSet(Map<String, Class<?>> map) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public ResultSet getResultSet(long index, int count) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public ResultSet getResultSet(long index, int count, Map<String, Class<?>> map) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public void free() {
+        // Nothing to release: the elements belong to the result set.
+    }
+}
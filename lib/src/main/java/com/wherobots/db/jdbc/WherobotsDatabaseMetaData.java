@@ -695,12 +695,12 @@ public class WherobotsDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public boolean supportsResultSetType(int type) throws SQLException {
-        return false;
+        return WherobotsJdbcConnection.isSupportedResultSetType(type);
     }
 
     @Override
     public boolean supportsResultSetConcurrency(int type, int concurrency) throws SQLException {
-        return false;
+        return WherobotsJdbcConnection.isSupportedResultSetType(type) && concurrency == ResultSet.CONCUR_READ_ONLY;
     }
 
     @Override
@@ -3,23 +3,36 @@ package com.wherobots.db.jdbc;
 import com.wherobots.db.DataCompression;
 import com.wherobots.db.DataFormat;
 import com.wherobots.db.GeometryRepresentation;
+import com.wherobots.db.jdbc.internal.BatchSource;
+import com.wherobots.db.jdbc.internal.BatchStore;
+import com.wherobots.db.jdbc.internal.Batches;
 import com.wherobots.db.jdbc.internal.ExecutionResult;
 import com.wherobots.db.jdbc.internal.Frame;
+import com.wherobots.db.jdbc.internal.PagedBatchSource;
+import com.wherobots.db.jdbc.internal.PrefetchingBatchSource;
 import com.wherobots.db.jdbc.internal.Query;
+import com.wherobots.db.jdbc.internal.SharedExecutors;
+import com.wherobots.db.jdbc.internal.StoredBatchSource;
 import com.wherobots.db.jdbc.models.CancelRequest;
 import com.wherobots.db.jdbc.models.Event;
 import com.wherobots.db.jdbc.models.ExecuteSqlRequest;
+import com.wherobots.db.jdbc.models.MemoryStats;
 import com.wherobots.db.jdbc.models.QueryState;
 import com.wherobots.db.jdbc.models.RetrieveResultsRequest;
 import com.wherobots.db.jdbc.models.Store;
 import com.wherobots.db.jdbc.models.StoreResult;
 import com.wherobots.db.jdbc.serde.ArrowUtil;
 import com.wherobots.db.jdbc.serde.JsonUtil;
+import com.wherobots.db.jdbc.serde.MalformedEventException;
 import com.wherobots.db.jdbc.session.WherobotsSession;
+import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.CallableStatement;
@@ -36,48 +49,220 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class WherobotsJdbcConnection implements Connection {
 
     public static final Logger logger = LoggerFactory.getLogger(WherobotsJdbcConnection.class);
 
+    // Maximum number of frames handled in one go before yielding the dispatcher thread to other connections.
+    private static final int MAX_FRAMES_PER_DRAIN = 32;
+
+    // Numbers the allocators of connections and statements, for them to have unique names in memory reports.
+    private static final AtomicLong ALLOCATOR_IDS = new AtomicLong();
+
     private final WherobotsSession session;
     private final ConcurrentMap<String, Query> queries;
     private final Properties info;
+    private final Executor dispatcher;
+    private final Executor decoder;
+    private final Executor prefetcher;
+    private final AtomicBoolean scheduled;
+    private final BufferAllocator allocator;
+    // The open statements of this connection, closed along with it.
+    private final Set<WherobotsStatement> statements;
+
+    private volatile boolean closed = false;
 
     public WherobotsJdbcConnection(WherobotsSession session, Properties info) {
         this.session = session;
         this.queries = new ConcurrentHashMap<>();
         this.info = info;
+        this.scheduled = new AtomicBoolean(false);
+        this.statements = ConcurrentHashMap.newKeySet();
+        this.allocator = ArrowUtil.allocator().newChildAllocator(
+                "connection-" + ALLOCATOR_IDS.incrementAndGet(), 0,
+                longProperty(info, WherobotsJdbcDriver.MEMORY_LIMIT_PROP, Long.MAX_VALUE));
+
+        if (WherobotsJdbcDriver.useVirtualThreads(info)) {
+            this.dispatcher = SharedExecutors.virtual();
+            this.decoder = SharedExecutors.virtual();
+            this.prefetcher = SharedExecutors.virtual();
+        } else {
+            this.dispatcher = SharedExecutors.dispatcher(intProperty(
+                    info, WherobotsJdbcDriver.DISPATCHER_THREADS_PROP, SharedExecutors.DEFAULT_DISPATCHER_THREADS));
+            this.decoder = SharedExecutors.decoder(intProperty(
+                    info, WherobotsJdbcDriver.DECODER_THREADS_PROP, SharedExecutors.DEFAULT_DECODER_THREADS));
+            this.prefetcher = SharedExecutors.prefetcher();
+        }
+        this.session.setMessageSpill(spillDirectory(info), longProperty(
+                info, WherobotsJdbcDriver.MESSAGE_SPILL_LIMIT_PROP, WherobotsSession.DEFAULT_MESSAGE_SPILL_LIMIT));
+        this.session.setFrameListener(this::schedule);
+    }
 
-        Thread thread = new Thread(this::loop);
-        thread.setDaemon(true);
-        thread.setName("wherobots-connection");
-        thread.start();
+    private static int intProperty(Properties info, String name, int defaultValue) {
+        String value = info.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value for %s: %s", name, value), e);
+        }
     }
 
-    private void loop() {
-        while (!this.isClosed()) {
-            Iterator<Frame> iterator = this.session.iterator();
-            while (iterator.hasNext()) {
-                Frame frame = iterator.next();
-                try {
-                    this.handle(frame.get());
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                    this.close();
-                    return;
+    private static long longProperty(Properties info, String name, long defaultValue) {
+        String value = info.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value for %s: %s", name, value), e);
+        }
+    }
+
+    /**
+     * @return the directory to create spill files in, or null for the system's temporary directory
+     */
+    private static Path spillDirectory(Properties info) {
+        String directory = info.getProperty(WherobotsJdbcDriver.SPILL_DIRECTORY_PROP);
+        return StringUtils.isBlank(directory) ? null : Path.of(directory.trim());
+    }
+
+    /**
+     * Creates the allocator for the results of a new statement, bounded by the statement memory limit.
+     */
+    BufferAllocator newStatementAllocator() {
+        return this.allocator.newChildAllocator(
+                "statement-" + ALLOCATOR_IDS.incrementAndGet(), 0, this.statementMemoryLimit());
+    }
+
+    /**
+     * The maximum number of bytes the results of each statement may allocate.
+     */
+    long statementMemoryLimit() {
+        return longProperty(info, WherobotsJdbcDriver.STATEMENT_MEMORY_LIMIT_PROP, Long.MAX_VALUE);
+    }
+
+    void register(WherobotsStatement statement) {
+        this.statements.add(statement);
+    }
+
+    void deregister(WherobotsStatement statement) {
+        this.statements.remove(statement);
+    }
+
+    /**
+     * Get the memory usage of the results of all statements of this connection.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code connection.unwrap(WherobotsJdbcConnection.class)}.
+     *
+     * @return the memory usage of this connection's results
+     */
+    public MemoryStats getMemoryStats() {
+        return MemoryStats.of(this.allocator);
+    }
+
+    /**
+     * Schedules a drain of the session's frame queue on the shared dispatcher, unless one is already scheduled or
+     * running. This guarantees frames of a given connection are handled one at a time, in order.
+     */
+    private void schedule() {
+        if (!this.closed && this.scheduled.compareAndSet(false, true)) {
+            this.dispatcher.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < MAX_FRAMES_PER_DRAIN && !this.closed; i++) {
+                Frame frame = this.session.poll();
+                if (frame == null) {
+                    break;
+                }
+
+                // Binary frames carry query results; decode them on the decoder pool so that a large result doesn't
+                // hold up the events of other queries multiplexed on this connection.
+                if (frame.isBinary()) {
+                    this.decoder.execute(() -> this.decode(frame));
+                    continue;
                 }
-                iterator.remove();
+
+                this.process(frame);
+            }
+        } finally {
+            this.scheduled.set(false);
+        }
+
+        // Reschedule if we yielded with frames left, or if a frame got queued after our last poll but before the
+        // scheduled flag was cleared.
+        if (this.session.hasPendingFrames()) {
+            this.schedule();
+        }
+    }
+
+    private void decode(Frame frame) {
+        if (!this.closed) {
+            this.process(frame);
+        }
+    }
+
+    /**
+     * Decodes and handles a frame. Only transport errors close the connection: a message that can't be decoded or
+     * handled fails the query it was for, if known, and leaves the other queries of the connection alone.
+     */
+    private void process(Frame frame) {
+        Event event;
+        try {
+            event = frame.get();
+        } catch (Exception e) {
+            if (frame.error() != null) {
+                logger.error(e.getMessage(), e);
+                this.close();
+            } else {
+                this.fail(e instanceof MalformedEventException malformed ? malformed.executionId() : null,
+                        "Failed to decode message", e);
+            }
+            return;
+        }
+
+        try {
+            this.handle(event);
+        } catch (Exception e) {
+            try {
+                release(event);
+            } catch (IOException re) {
+                e.addSuppressed(re);
             }
+            this.fail(event.executionId, "Failed to handle message", e);
+        }
+    }
+
+    /**
+     * Fails the query a message was for, or drops the message if its query is not known.
+     */
+    private void fail(String executionId, String message, Exception e) {
+        Query query = executionId != null ? this.queries.get(executionId) : null;
+        if (query == null) {
+            logger.error("{}; dropping it.", message, e);
+            return;
         }
+
+        logger.error("{} for query {}.", message, executionId, e);
+        query.statement().onExecutionResult(
+                new ExecutionResult(null, new SQLException(message + " for query " + executionId, e), null));
     }
 
     private void handle(Event event) throws Exception {
@@ -86,12 +271,14 @@ public class WherobotsJdbcConnection implements Connection {
         }
         if (event.kind == null || event.executionId == null) {
             // Invalid event.
+            release(event);
             return;
         }
 
         Query query = this.queries.get(event.executionId);
         if (query == null) {
             logger.warn("Received event for unknown query {}.", event.executionId);
+            release(event);
             return;
         }
 
@@ -110,9 +297,12 @@ public class WherobotsJdbcConnection implements Connection {
                         // Store was configured but produced no results (empty result set)
                         logger.info("Query {} completed with store configured but no results to store.", event.executionId);
                         query.statement().onExecutionResult(new ExecutionResult(null, null, null));
+                    } else if (query.resultsRequested()) {
+                        // Results were requested with the query; the session sends them without being asked.
+                        logger.info("Query {} succeeded; awaiting its results.", event.executionId);
                     } else {
                         // No store configured, retrieve results normally
-                        this.retrieveResults(event.executionId);
+                        this.retrieveResults(event.executionId, query.statement().getFetchSize());
                     }
                 }
                 case cancelled -> query.statement().onExecutionResult(new ExecutionResult(null, null, null));
@@ -126,12 +316,28 @@ public class WherobotsJdbcConnection implements Connection {
 
         if (event instanceof Event.ExecutionResultEvent ere) {
             Event.Results results = ere.results;
-            if (results != null) {
+            if (results != null && results.resultBytes != null) {
+                if (results.compression == null) {
+                    release(event);
+                    query.statement().onExecutionResult(new ExecutionResult(null, new SQLException(
+                            "Results of query " + event.executionId + " don't specify their compression"), null));
+                    return;
+                }
+
                 logger.info(
                         "Received {} bytes of {}-compressed {} results from {}.",
-                        results.resultBytes.length, results.compression, results.format, event.executionId);
-                ArrowStreamReader reader = ArrowUtil.readFrom(results.resultBytes, results.compression);
-                query.statement().onExecutionResult(new ExecutionResult(reader, null, null));
+                        results.resultSize >= 0 ? results.resultSize : "streamed", results.compression,
+                        results.format, event.executionId);
+                try {
+                    ArrowStreamReader reader = ArrowUtil.readFrom(
+                            results.resultBytes, results.compression, query.statement().allocator());
+                    query.statement().onExecutionResult(
+                            new ExecutionResult(reader, null, null, Boolean.TRUE.equals(results.hasMore)));
+                } catch (IOException e) {
+                    release(event);
+                    query.statement().onExecutionResult(new ExecutionResult(null,
+                            new SQLException("Failed to decode results of query " + event.executionId, e), null));
+                }
             } else {
                 // Server returned no result data — unblock the statement.
                 // This can happen for store-only executions or empty results.
@@ -149,41 +355,143 @@ public class WherobotsJdbcConnection implements Connection {
         logger.warn("Received unknown event kind: {}", event.kind);
     }
 
+    /**
+     * Releases the result bytes of an event that won't be handled. While they are still being received, this lets
+     * the session drop the rest of them instead of waiting for a reader.
+     */
+    private static void release(Event event) throws IOException {
+        if (event instanceof Event.ExecutionResultEvent ere && ere.results != null && ere.results.resultBytes != null) {
+            ere.results.resultBytes.close();
+        }
+    }
+
     String execute(String sql, WherobotsStatement statement, Store store) {
         String executionId = UUID.randomUUID().toString();
+        boolean fetch = store == null
+                && Boolean.parseBoolean(info.getProperty(WherobotsJdbcDriver.EXECUTE_AND_FETCH_PROP));
         this.queries.put(executionId, new Query(
                 executionId,
                 sql,
                 statement,
-                QueryState.pending));
+                QueryState.pending,
+                fetch));
+
+        ExecuteSqlRequest executeRequest = new ExecuteSqlRequest(executionId, sql, store);
+        if (fetch) {
+            executeRequest.format = this.requestedFormat();
+            executeRequest.compression = this.requestedCompression();
+            executeRequest.geometry = this.requestedGeometry();
+            executeRequest.bufferCompression = this.requestedBufferCompression();
+            executeRequest.fetchSize = fetchSize(statement.getFetchSize());
+        }
+        if (statement.getMaxRows() > 0) {
+            executeRequest.maxRows = statement.getMaxRows();
+        }
 
-        String request = JsonUtil.serialize(new ExecuteSqlRequest(
-                executionId,
-                sql,
-                store
-        ));
+        String request = JsonUtil.serialize(executeRequest);
 
         logger.info("Executing SQL query {}: {}", executionId, request);
         this.session.send(request);
         return executionId;
     }
 
-    void retrieveResults(String executionId) {
+    /**
+     * Requests the results of a query, or their next page.
+     *
+     * @param fetchSize the maximum number of rows to retrieve at once, or 0 to retrieve all results in one go
+     */
+    void retrieveResults(String executionId, int fetchSize) {
         if (!this.queries.containsKey(executionId)) {
             return;
         }
 
         String request = JsonUtil.serialize(new RetrieveResultsRequest(
                 executionId,
-                (DataFormat) info.get(WherobotsJdbcDriver.FORMAT_PROP),
-                (DataCompression) info.getOrDefault(WherobotsJdbcDriver.COMPRESSION_PROP, DataCompression.zstd),
-                (GeometryRepresentation) info.get(WherobotsJdbcDriver.GEOMETRY_PROP)
+                this.requestedFormat(),
+                this.requestedCompression(),
+                this.requestedGeometry(),
+                this.requestedBufferCompression(),
+                fetchSize(fetchSize)
         ));
 
         logger.info("Retrieving results from {} ...", executionId);
         this.session.send(request);
     }
 
+    /**
+     * The fetch size of a request, omitted unless set.
+     */
+    private static Integer fetchSize(int fetchSize) {
+        return fetchSize > 0 ? fetchSize : null;
+    }
+
+    /**
+     * Creates the source of the record batches of a result: reading ahead of the application on the prefetch executor,
+     * if this connection asked for it, and storing the whole result locally for scrolling, spilling to disk past the
+     * spill threshold.
+     *
+     * @param source     the batches of the result, read in stream order
+     * @param scrollable whether to store the whole result locally for random access; only then is the returned source
+     *                   a {@link StoredBatchSource}. Forward-only results are read in stream order as the application
+     *                   moves through them, never held in full.
+     */
+    BatchSource batchSource(BatchSource source, BufferAllocator allocator, boolean scrollable) throws IOException {
+        if (Batches.hasNestedDictionaries(source.root().getSchema())) {
+            if (scrollable) {
+                logger.warn("Results with nested dictionary-encoded fields can only be read forward.");
+            } else {
+                logger.debug("Reading results with nested dictionary-encoded fields in stream order.");
+            }
+            return source;
+        }
+
+        int prefetch = intProperty(info, WherobotsJdbcDriver.PREFETCH_BATCHES_PROP, 0);
+        if (prefetch > 0 && source instanceof PagedBatchSource) {
+            // Paging bounds the results held in memory already, and closing the result set would wait on a page
+            // being read ahead until it arrives or times out.
+            logger.debug("Reading paged results without prefetching.");
+        } else if (prefetch > 0) {
+            source = new PrefetchingBatchSource(source, allocator, prefetch, this.prefetcher);
+        }
+
+        if (scrollable) {
+            // Scrollable results are held in memory in full, unless a spill threshold is set.
+            long spillThreshold = longProperty(info, WherobotsJdbcDriver.SPILL_THRESHOLD_PROP, -1);
+            long threshold = spillThreshold >= 0 ? spillThreshold : Long.MAX_VALUE;
+            BatchStore store = BatchStore.drain(source, allocator, threshold, spillDirectory(info));
+            return new StoredBatchSource(store, allocator);
+        }
+        return source;
+    }
+
+    private DataFormat requestedFormat() {
+        return (DataFormat) info.get(WherobotsJdbcDriver.FORMAT_PROP);
+    }
+
+    private DataCompression requestedCompression() {
+        if (this.requestedBufferCompression() != null) {
+            // Buffers are compressed already; compressing the stream on top of it would only cost time.
+            return DataCompression.none;
+        }
+        return (DataCompression) info.getOrDefault(WherobotsJdbcDriver.COMPRESSION_PROP, DataCompression.zstd);
+    }
+
+    private DataCompression requestedBufferCompression() {
+        Object value = info.get(WherobotsJdbcDriver.BUFFER_COMPRESSION_PROP);
+        if (value == null) {
+            return null;
+        }
+
+        DataCompression codec = value instanceof DataCompression compression
+                ? compression
+                : DataCompression.valueOf(value.toString().trim());
+        return codec == DataCompression.none ? null : codec;
+    }
+
+    private GeometryRepresentation requestedGeometry() {
+        return (GeometryRepresentation) info.get(WherobotsJdbcDriver.GEOMETRY_PROP);
+    }
+
     void cancel(String executionId) throws SQLException {
         Query query = this.queries.get(executionId);
         if (query == null) {
@@ -237,12 +545,33 @@ public class WherobotsJdbcConnection implements Connection {
 
     @Override
     public void close() {
+        this.closed = true;
+        // Statements release their results and allocators first, for the connection's allocator to close cleanly.
+        for (WherobotsStatement statement : List.copyOf(this.statements)) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.warn("Failed to close statement.", e);
+            }
+        }
         this.session.close();
+        closeAllocator(this.allocator);
+    }
+
+    /**
+     * Closes a connection or statement allocator, reporting any buffer that was not released.
+     */
+    static void closeAllocator(BufferAllocator allocator) {
+        try {
+            allocator.close();
+        } catch (IllegalStateException e) {
+            logger.warn("Unreleased result buffers in {}: {}", allocator.getName(), allocator.toVerboseString(), e);
+        }
     }
 
     @Override
     public boolean isClosed() {
-        return this.session.isClosed();
+        return this.closed || this.session.isClosed();
     }
 
     @Override
@@ -292,20 +621,27 @@ public class WherobotsJdbcConnection implements Connection {
 
     @Override
     public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
-        if (resultSetType != ResultSet.TYPE_FORWARD_ONLY || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
+        if (!isSupportedResultSetType(resultSetType) || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
             throw new SQLFeatureNotSupportedException("createStatement: unsupported statement parameters");
         }
 
-        return createStatement();
+        return new WherobotsStatement(this, resultSetType);
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-        if (resultSetType != ResultSet.TYPE_FORWARD_ONLY || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
+        if (!isSupportedResultSetType(resultSetType) || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
             throw new SQLFeatureNotSupportedException("prepareStatement: unsupported statement parameters");
         }
 
-        return prepareStatement(sql);
+        return new WherobotsPreparedStatement(this, sql, resultSetType);
+    }
+
+    /**
+     * Scroll-insensitive result sets are stored locally in full, and read back in any order.
+     */
+    static boolean isSupportedResultSetType(int resultSetType) {
+        return resultSetType == ResultSet.TYPE_FORWARD_ONLY || resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE;
     }
 
     @Override
@@ -413,10 +749,11 @@ public class WherobotsJdbcConnection implements Connection {
 
     @Override
     public boolean isValid(int timeout) throws SQLException {
-        Statement stmt = this.createStatement();
-        stmt.setQueryTimeout(timeout);
-        try (ResultSet result = stmt.executeQuery("SELECT 1")) {
-            return result.next();
+        try (Statement stmt = this.createStatement()) {
+            stmt.setQueryTimeout(timeout);
+            try (ResultSet result = stmt.executeQuery("SELECT 1")) {
+                return result.next();
+            }
         }
     }
 
@@ -476,12 +813,16 @@ public class WherobotsJdbcConnection implements Connection {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (isWrapperFor(iface)) {
+            return (T) this;
+        }
+        throw new SQLException("Cannot unwrap to " + iface.getName());
     }
 
     @Override
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return iface != null && iface.isAssignableFrom(getClass());
     }
 }
@@ -3,10 +3,14 @@ package com.wherobots.db.jdbc;
 import com.wherobots.db.Region;
 import com.wherobots.db.Runtime;
 import com.wherobots.db.SessionType;
+import com.wherobots.db.jdbc.internal.SharedExecutors;
+import com.wherobots.db.jdbc.internal.VirtualThreads;
 import com.wherobots.db.jdbc.session.WherobotsSession;
 import com.wherobots.db.jdbc.session.WherobotsSessionSupplier;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.core5.net.URIBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -18,9 +22,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
 public class WherobotsJdbcDriver implements Driver {
 
+    private static final Logger logger = LoggerFactory.getLogger(WherobotsJdbcDriver.class);
+
     public static final String DRIVER_NAME = "wherobots";
     public static final int MAJOR_VERSION = 0;
     public static final int MINOR_VERSION = 1;
@@ -61,9 +68,83 @@ public class WherobotsJdbcDriver implements Driver {
     // Results compression codec; one of {@link DataCompression}
     public static final String COMPRESSION_PROP = "compression";
 
+    /**
+     * Arrow IPC codec compressing each buffer of the result batches, one of {@link DataCompression} other than
+     * {@code none}. When set, results are requested without whole-stream compression and with their buffers
+     * compressed instead, so that the driver can decompress the buffers of each batch in parallel. Requires a SQL
+     * Session that supports it.
+     */
+    public static final String BUFFER_COMPRESSION_PROP = "bufferCompression";
+
     // Geometry representation format; one of {@link GeometryRepresentation}
     public static final String GEOMETRY_PROP = "geometry";
 
+    /**
+     * Request the results along with the query's execution, so the session sends them as soon as the query succeeds
+     * instead of waiting for a separate retrieval request; this saves a round trip per query. Not applied to queries
+     * storing their results. Requires a SQL Session that supports it.
+     */
+    public static final String EXECUTE_AND_FETCH_PROP = "executeAndFetch";
+
+    /**
+     * Size of the driver-wide thread pool handling inbound messages for all connections. The pool is created by the
+     * first connection, so only the value given to that connection is honored.
+     */
+    public static final String DISPATCHER_THREADS_PROP = "dispatcherThreads";
+
+    /**
+     * Size of the driver-wide thread pool decoding query results, off the dispatcher threads. Like the dispatcher
+     * pool, it is created by the first connection.
+     */
+    public static final String DECODER_THREADS_PROP = "decoderThreads";
+
+    /**
+     * Run the connection's message dispatching, result decoding and the HTTP client's tasks while provisioning the
+     * session on virtual threads instead of the shared platform thread pools. Requires Java 21 or later; ignored with a warning otherwise.
+     */
+    public static final String VIRTUAL_THREADS_PROP = "virtualThreads";
+
+    /**
+     * Number of record batches of a result to decode ahead of the application, in the background on threads of
+     * their own, so that moving on to the next batch doesn't wait for its decoding. Each read-ahead batch is
+     * held in memory on top of the current one, with its dictionary-encoded columns decoded. Disabled by default; not
+     * applied to results with dictionary-encoded fields nested in other columns.
+     */
+    public static final String PREFETCH_BATCHES_PROP = "prefetchBatches";
+
+    /**
+     * Maximum number of bytes of Arrow buffers the results of all of a connection's statements may hold at once; at
+     * least 1. Unbounded by default, within the limits of the JVM's direct memory.
+     */
+    public static final String MEMORY_LIMIT_PROP = "memoryLimit";
+
+    /**
+     * Maximum number of bytes of Arrow buffers the results of a single statement may hold at once; at least 1. A
+     * statement exceeding it fails with an {@link java.sql.SQLException}, and its query is cancelled. Unbounded by
+     * default.
+     */
+    public static final String STATEMENT_MEMORY_LIMIT_PROP = "statementMemoryLimit";
+
+    /**
+     * Hold up to this number of bytes of each scrollable result in memory, spilling the rest to a local Arrow IPC
+     * file, read back through memory mapping. Scrollable results are read in full when their query executes; the file
+     * is deleted when the result set is closed. Forward-only results are read as the application moves through them,
+     * never held in full, and aren't spilled. Unbounded by default: scrollable results are held in memory.
+     */
+    public static final String SPILL_THRESHOLD_PROP = "spillThreshold";
+
+    /**
+     * Directory to create spill files in, including the overflow files of results received faster than they are read;
+     * defaults to the system's temporary directory.
+     */
+    public static final String SPILL_DIRECTORY_PROP = "spillDirectory";
+
+    /**
+     * Maximum number of bytes of a result that may overflow to disk while it is received faster than it is read,
+     * beyond the first 64 MiB held in memory. The query fails past this limit. Defaults to 16 GiB.
+     */
+    public static final String MESSAGE_SPILL_LIMIT_PROP = "messageSpillLimit";
+
     public static final String DEFAULT_ENDPOINT = "api.cloud.wherobots.com";
     public static final String STAGING_ENDPOINT = "api.staging.wherobots.com";
 
@@ -84,6 +165,8 @@ public class WherobotsJdbcDriver implements Driver {
 
     @Override
     public Connection connect(String url, Properties info) throws SQLException {
+        validateProperties(info);
+
         String host = DEFAULT_ENDPOINT;
         try {
             URIBuilder parsed = new URIBuilder(url.substring(JDBC_PREFIX.length()));
@@ -124,7 +207,12 @@ public class WherobotsJdbcDriver implements Driver {
         Integer shutdownAfterInactiveSeconds = null;
         String shutdownStr = info.getProperty(SHUTDOWN_AFTER_INACTIVE_SECONDS_PROP);
         if (StringUtils.isNotBlank(shutdownStr)) {
-            shutdownAfterInactiveSeconds = Integer.parseInt(shutdownStr);
+            shutdownAfterInactiveSeconds = Integer.parseInt(shutdownStr.trim());
+        }
+
+        Executor executor = null;
+        if (useVirtualThreads(info)) {
+            executor = SharedExecutors.virtual();
         }
 
         Map<String, String> headers = new HashMap<>(getAuthHeaders(info));
@@ -148,13 +236,61 @@ public class WherobotsJdbcDriver implements Driver {
                     sessionType,
                     forceNew,
                     shutdownAfterInactiveSeconds,
-                    headers
+                    headers,
+                    executor
             );
         }
 
         return new WherobotsJdbcConnection(session, info);
     }
 
+    /**
+     * Checks the numeric connection properties up front, so that a malformed value fails the connection with an
+     * {@link SQLException} before any session is created for it.
+     */
+    static void validateProperties(Properties info) throws SQLException {
+        checkNumber(info, SHUTDOWN_AFTER_INACTIVE_SECONDS_PROP, 0, Integer.MAX_VALUE);
+        checkNumber(info, DISPATCHER_THREADS_PROP, 1, Integer.MAX_VALUE);
+        checkNumber(info, DECODER_THREADS_PROP, 1, Integer.MAX_VALUE);
+        checkNumber(info, MESSAGE_SPILL_LIMIT_PROP, 0, Long.MAX_VALUE);
+        checkNumber(info, PREFETCH_BATCHES_PROP, 0, Integer.MAX_VALUE);
+        // A limit of 0 would fail every query; leave the limit out for unbounded memory.
+        checkNumber(info, MEMORY_LIMIT_PROP, 1, Long.MAX_VALUE);
+        checkNumber(info, STATEMENT_MEMORY_LIMIT_PROP, 1, Long.MAX_VALUE);
+        checkNumber(info, SPILL_THRESHOLD_PROP, 0, Long.MAX_VALUE);
+    }
+
+    private static void checkNumber(Properties info, String name, long min, long max) throws SQLException {
+        String value = info.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return;
+        }
+
+        long number;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException(String.format("Invalid value for %s: %s", name, value), "22023", e);
+        }
+        if (number < min || number > max) {
+            throw new SQLException(String.format("Invalid value for %s: %s", name, value), "22023");
+        }
+    }
+
+    /**
+     * Tells whether the connection opted into virtual threads, and whether they are available.
+     */
+    static boolean useVirtualThreads(Properties info) {
+        if (!Boolean.parseBoolean(info.getProperty(VIRTUAL_THREADS_PROP))) {
+            return false;
+        }
+        if (!VirtualThreads.isSupported()) {
+            logger.warn("Virtual threads require Java 21 or later; ignoring {}.", VIRTUAL_THREADS_PROP);
+            return false;
+        }
+        return true;
+    }
+
     private Map<String, String> getAuthHeaders(Properties info) {
         String token = info.getProperty(TOKEN_PROP);
         if (StringUtils.isNotBlank(token)) {
@@ -26,7 +26,11 @@ public class WherobotsPreparedStatement extends WherobotsStatement implements Pr
     private final String sql;
 
     public WherobotsPreparedStatement(WherobotsJdbcConnection connection, String sql) {
-        super(connection);
+        this(connection, sql, ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    public WherobotsPreparedStatement(WherobotsJdbcConnection connection, String sql, int resultSetType) {
+        super(connection, resultSetType);
         this.sql = sql;
     }
 
@@ -1,10 +1,15 @@
 package com.wherobots.db.jdbc;
 
+import com.wherobots.db.jdbc.internal.BatchSource;
+import com.wherobots.db.jdbc.internal.ColumnAccessor;
+import com.wherobots.db.jdbc.internal.StoredBatchSource;
+import com.wherobots.db.jdbc.internal.StreamBatchSource;
+import com.wherobots.db.jdbc.models.SpillStats;
+import org.apache.arrow.memory.OutOfMemoryException;
 import org.apache.arrow.util.Preconditions;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
-import org.apache.arrow.vector.types.pojo.ArrowType;
-import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.util.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +22,7 @@ import java.io.StringReader;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.Clob;
@@ -34,12 +40,7 @@ import java.sql.SQLXML;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 public class WherobotsResultSet implements ResultSet {
@@ -47,205 +48,368 @@ public class WherobotsResultSet implements ResultSet {
     private static final Logger logger = LoggerFactory.getLogger(WherobotsResultSet.class);
 
     private final Statement statement;
-    private final ArrowStreamReader reader;
-    private final VectorSchemaRoot root;
+    private final BatchSource batches;
     private final WherobotsResultSetMetaData metadata;
+    private final ColumnAccessor[] accessors;
+    // The stored batches of a scroll-insensitive result set, null if this result set is forward-only.
+    private final StoredBatchSource scrollable;
 
     private int currentRow = -1;
     private int currentVectorRow = -1;
+    private VectorSchemaRoot root;
     private boolean closed = false;
+    private boolean released = false;
     private boolean wasNull = false;
+    private int fetchSize;
+    // The maximum number of rows of this result set, 0 if unlimited.
+    private final int maxRows;
 
     public WherobotsResultSet(Statement statement, ArrowStreamReader reader) throws IOException {
+        this(statement, new StreamBatchSource(reader));
+    }
+
+    public WherobotsResultSet(Statement statement, BatchSource batches) {
+        this(statement, batches, ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    /**
+     * @param type the type of this result set, {@link ResultSet#TYPE_FORWARD_ONLY} or
+     *             {@link ResultSet#TYPE_SCROLL_INSENSITIVE}; scrolling requires the batches to come from a
+     *             {@link StoredBatchSource}
+     */
+    public WherobotsResultSet(Statement statement, BatchSource batches, int type) {
+        if (type == ResultSet.TYPE_SCROLL_INSENSITIVE && batches instanceof StoredBatchSource stored) {
+            this.scrollable = stored;
+        } else if (type == ResultSet.TYPE_FORWARD_ONLY) {
+            this.scrollable = null;
+        } else {
+            throw new IllegalArgumentException("Unsupported result set type " + type + " for " + batches);
+        }
+
         this.statement = statement;
-        this.reader = reader;
-        this.root = reader.getVectorSchemaRoot();
+        this.batches = batches;
+        this.fetchSize = statement instanceof WherobotsStatement ws ? ws.getFetchSize() : 0;
+        this.maxRows = statement instanceof WherobotsStatement ws ? ws.getMaxRows() : 0;
+        this.root = batches.root();
         this.metadata = new WherobotsResultSetMetaData(root.getSchema());
+        this.accessors = root.getSchema().getFields().stream()
+                .map(field -> ColumnAccessor.of(field, batches.dictionaries()))
+                .toArray(ColumnAccessor[]::new);
+        this.bindAccessors();
+    }
+
+    /**
+     * Binds the column accessors to the vectors of the current batch.
+     */
+    private void bindAccessors() {
+        for (int i = 0; i < this.accessors.length; i++) {
+            this.accessors[i].bind(this.root.getVector(i));
+        }
     }
 
-    @Override
-    public boolean next() {
-        this.currentRow++;
-        this.currentVectorRow++;
-
-        if (this.currentVectorRow >= this.root.getRowCount()) {
-            try {
-                if (this.reader.loadNextBatch()) {
-                    this.currentVectorRow = 0;
-                    return true;
-                }
-            } catch (IOException e) {
-                logger.error("Failed to load next batch", e);
+    /**
+     * Loads the next batch from the stream and binds the column accessors to it.
+     *
+     * @return false if the end of the stream was reached
+     * @throws SQLException if the batch doesn't fit in the statement's memory limit, in which case the query is
+     *                      cancelled
+     */
+    private boolean loadNextBatch() throws IOException, SQLException {
+        VectorSchemaRoot batch;
+        try {
+            batch = this.batches.next();
+        } catch (IOException | RuntimeException e) {
+            if (isOutOfMemory(e)) {
+                throw outOfMemory(this.statement, e);
             }
+            throw e;
+        }
+
+        if (batch == null) {
+            return false;
         }
 
-        return this.currentVectorRow < this.root.getRowCount();
+        this.root = batch;
+        this.bindAccessors();
+        return true;
     }
 
-    @Override
-    public void close() throws SQLException {
-        if (!closed) {
-            try {
-                reader.close();
-            } catch (IOException e) {
-                throw new SQLException(e);
+    /**
+     * @return whether the given exception was caused by exceeding the memory limit of the results
+     */
+    static boolean isOutOfMemory(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OutOfMemoryException) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            closed = true;
+    /**
+     * Cancels the query whose results exceeded their memory limit, and returns the error to report it with.
+     */
+    static SQLException outOfMemory(Statement statement, Exception e) {
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException ce) {
+                logger.warn("Failed to cancel query after exceeding its memory limit", ce);
+            }
         }
+        // SQLSTATE class 53: insufficient resources.
+        return new SQLException("Query results exceed the available memory: " + e.getMessage(), "53200", e);
+    }
+
+    /**
+     * Moves the cursor of a scrollable result set to the given row, loading the batch holding it if needed.
+     *
+     * @param row the 0-based index of the row, clamped to the positions before the first row and after the last one
+     * @return true if the cursor is on a row
+     */
+    private boolean moveTo(int row) throws SQLException {
+        this.checkScrollable();
+        int rowCount = this.rowCount();
+        row = Math.max(-1, Math.min(row, rowCount));
+
+        int batchIndex = this.scrollable.batchIndex();
+        try {
+            // Past the maximum number of rows, the source is positioned after its last row too.
+            this.currentVectorRow = this.scrollable.seek(row < rowCount ? row : this.scrollable.rowCount());
+        } catch (IOException e) {
+            throw new SQLException("Failed to load batch", e);
+        }
+        if (this.scrollable.batchIndex() != batchIndex) {
+            this.root = this.scrollable.root();
+            this.bindAccessors();
+        }
+
+        this.currentRow = row;
+        return row >= 0 && row < rowCount;
     }
 
-    @Override
-    public boolean wasNull() {
-        return this.wasNull;
+    /**
+     * @return the number of rows of a scrollable result set, up to its maximum number of rows
+     */
+    private int rowCount() {
+        int rowCount = this.scrollable.rowCount();
+        return this.maxRows > 0 ? Math.min(rowCount, this.maxRows) : rowCount;
+    }
+
+    /**
+     * @return true if the rows up to and including the given one reach the maximum number of rows
+     */
+    private boolean reachesMaxRows(long row) {
+        return this.maxRows > 0 && row + 1 >= this.maxRows;
     }
 
-    private Field getArrowField(int columnIndex) throws SQLException {
+    /**
+     * Releases the batches of this result set, once read through or closed. This lets the rest of the results be
+     * dropped unread, when stopping early at the maximum number of rows.
+     */
+    private void releaseBatches() throws SQLException {
+        if (this.released) {
+            return;
+        }
+
+        this.released = true;
         try {
-            // Column index is 1-based in JDBC
-            return root.getSchema().getFields().get(columnIndex - 1);
-        } catch (Exception e) {
-            throw new SQLException(String.format("Error accessing field for column at index %d", columnIndex), e);
+            this.batches.close();
+        } catch (IOException e) {
+            throw new SQLException(e);
         }
     }
 
-    private Object refineStorage(Object storage, Field arrowField) throws SQLException {
-        if (storage == null) {
-            return null;
+    private void checkScrollable() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Result set is closed");
+        }
+        if (this.scrollable == null) {
+            throw new SQLFeatureNotSupportedException("Result set is forward-only");
         }
+    }
 
-        ArrowType arrowType = arrowField.getType();
-
-        switch (arrowType.getTypeID()) {
-            // These types don't need any special handling
-            case Null:
-            case Bool:
-            case Int:
-            case FloatingPoint:
-            case Utf8:
-            case LargeUtf8:
-            case Binary:
-            case LargeBinary:
-            case FixedSizeBinary:
-                return storage;
-
-            case Date:
-                ArrowType.Date dateType = (ArrowType.Date) arrowType;
-                switch (dateType.getUnit()) {
-                    case DAY:
-                        int daysSinceEpoch = Integer.class.cast(storage);
-                        return Date.valueOf(LocalDate.ofEpochDay(daysSinceEpoch));
-                    case MILLISECOND:
-                        long msSinceEpoch = Long.class.cast(storage);
-                        return new Date(msSinceEpoch);
-                }
-                break;
-
-            case Timestamp:
-                ArrowType.Timestamp timestampType = (ArrowType.Timestamp) arrowType;
-                long sinceEpoch = Long.class.cast(storage);
-                switch (timestampType.getUnit()) {
-                    case MICROSECOND:
-                        return Timestamp.from(Instant.ofEpochSecond(
-                                sinceEpoch / 1_000_000, (sinceEpoch % 1_000_000) * 1_000));
-                    case MILLISECOND:
-                        return Timestamp.from(Instant.ofEpochMilli(sinceEpoch));
-                    case NANOSECOND:
-                        return Timestamp.from(Instant.ofEpochSecond(
-                                sinceEpoch / 1_000_000_000, sinceEpoch % 1_000_000_000));
-                    case SECOND:
-                        return Timestamp.from(Instant.ofEpochSecond(sinceEpoch));
-                }
-                break;
-
-            // Nested types. These need some special if there are any inner types with
-            // datetimes.
-            case Map:
-                Field mapEntryField = arrowField.getChildren().get(0);
-                Field keyField = mapEntryField.getChildren().get(0);
-                Field valueField = mapEntryField.getChildren().get(1);
-
-                // Check key storage. We only support string storage so we can return
-                // Map<String, Object>
-                switch (keyField.getType().getTypeID()) {
-                    case Utf8:
-                    case LargeUtf8:
-                        break;
-                    default:
-                        throw new SQLException(String.format(
-                                "Unsupported key storage for Map (expected String, got %s)", keyField.getType()));
-                }
+    @Override
+    public boolean next() throws SQLException {
+        if (this.scrollable != null) {
+            return this.moveTo(this.currentRow + 1);
+        }
+        if (this.released) {
+            return false;
+        }
+        if (this.reachesMaxRows(this.currentRow)) {
+            this.currentRow = this.maxRows;
+            this.currentVectorRow = this.root.getRowCount();
+            this.releaseBatches();
+            return false;
+        }
 
-                List<?> entries = (List<?>) storage;
-                LinkedHashMap<String, Object> map = new LinkedHashMap<>();
-                for (Object rawEntry : entries) {
-                    Map<?, ?> entry = (Map<?, ?>) rawEntry;
-                    String k = ((Text) entry.get(keyField.getName())).toString();
-                    Object v = refineStorage(entry.get(valueField.getName()), valueField);
-                    map.put(k, v);
-                }
-                return map;
-
-            case Struct:
-                LinkedHashMap<String, Object> refinedStructMap = new LinkedHashMap<>();
-                Map<?, ?> storageStructMap = (Map<?, ?>) storage;
-                int index = 0;
-                for (Map.Entry<?, ?> entry : storageStructMap.entrySet()) {
-                    Field structField = arrowField.getChildren().get(index++);
-                    refinedStructMap.put(entry.getKey().toString(), refineStorage(entry.getValue(), structField));
-                }
-                return refinedStructMap;
-
-            case List:
-            case LargeList:
-            case FixedSizeList:
-                List<?> sourceList = (List<?>) storage;
-                Field childField = arrowField.getChildren().get(0);
-                ArrayList<Object> refined = new ArrayList<>(sourceList.size());
-                for (Object element : sourceList) {
-                    refined.add(element == null ? null : refineStorage(element, childField));
+        this.currentRow++;
+        this.currentVectorRow++;
+
+        try {
+            // Loop over batches until one has rows, as the stream may contain empty batches.
+            while (this.currentVectorRow >= this.root.getRowCount()) {
+                if (!this.loadNextBatch()) {
+                    return false;
                 }
-                return refined;
-
-            // These types are probably not supported but we can return their storage
-            // as a fallback.
-            case Time:
-            case Interval:
-            case Duration:
-            case Union:
-            case Decimal:
-                return storage;
-            default:
-                break;
+                this.currentVectorRow = 0;
+            }
+        } catch (IOException e) {
+            logger.error("Failed to load next batch", e);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Advance this result set to its next batch of rows, and return the batch as a whole for columnar processing.
+     * <p>
+     * Any rows of the current batch that have not been visited with {@link #next()} yet are skipped. Once the batch
+     * is returned, the cursor is positioned on its last row, so that a subsequent call to {@link #next()} moves on to
+     * the first row of the following batch. Batches may be empty.
+     * <p>
+     * The returned root, and the vectors within it, are owned by this result set: the root may be reused for the
+     * following batches or released when moving on to them, that is on the next call to {@link #next()} that crosses
+     * a batch boundary or on the next call to this method, and it is released when this result set is closed.
+     * Callers must not close it, and must not keep references to its vectors or their buffers past that point; to
+     * retain a batch, transfer its vectors to vectors of your own (see
+     * {@link org.apache.arrow.vector.util.TransferPair}) or unload it with a
+     * {@link org.apache.arrow.vector.VectorUnloader}.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @return the next batch of rows, or null if there are no more batches
+     * @throws SQLException if this result set is closed, or the next batch can't be read or doesn't fit in the
+     *                      statement's memory limit
+     */
+    public VectorSchemaRoot nextBatch() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Result set is closed");
+        }
+
+        if (this.released) {
+            return null;
+        }
+
+        // Rows of the current batch after the cursor, skipped over by moving to the next batch.
+        int skipped = Math.max(0, this.root.getRowCount() - this.currentVectorRow - 1);
+        if (this.reachesMaxRows((long) this.currentRow + skipped)) {
+            this.currentRow = this.maxRows;
+            this.currentVectorRow = this.root.getRowCount();
+            if (this.scrollable == null) {
+                this.releaseBatches();
+            }
+            return null;
         }
 
-        throw new SQLException(
-                String.format("Element has unsupported Arrow type %s",
-                        arrowType));
+        try {
+            if (!this.loadNextBatch()) {
+                this.currentRow = this.scrollable != null ? this.rowCount() : this.currentRow + skipped + 1;
+                this.currentVectorRow = this.root.getRowCount();
+                return null;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to load next batch", e);
+        }
+
+        this.currentRow += skipped + this.root.getRowCount();
+        if (this.maxRows > 0 && this.currentRow >= this.maxRows) {
+            // Cut the batch down to the rows within the maximum number of rows.
+            this.root.setRowCount(this.root.getRowCount() - (this.currentRow - this.maxRows + 1));
+            this.currentRow = this.maxRows - 1;
+        }
+        this.currentVectorRow = this.root.getRowCount() - 1;
+        return this.root;
+    }
+
+    /**
+     * Get the root holding the current batch of rows: the same root that {@link #nextBatch()} returns, and that is
+     * available before the first batch is loaded to inspect the schema of the results. It follows the same ownership
+     * rules as the batches returned by {@link #nextBatch()}.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @return the root of this result set
+     */
+    public VectorSchemaRoot getVectorSchemaRoot() {
+        return this.root;
+    }
+
+    /**
+     * Get the dictionaries of the dictionary-encoded columns of the batches returned by {@link #nextBatch()}, whose
+     * vectors only hold indices into them.
+     * <p>
+     * The dictionaries follow the same ownership rules as the batches: they are owned by this result set, may be
+     * replaced when the next batch is loaded, and are released when this result set is closed.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @return the dictionaries of this result set
+     */
+    public DictionaryProvider getDictionaryProvider() {
+        return this.batches.dictionaries();
+    }
+
+    /**
+     * Get statistics about the batches of this result set spilled to local disk, if spilling is enabled.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @return the spill statistics of this result set, with no batches if nothing was spilled
+     */
+    public SpillStats getSpillStats() {
+        return this.batches.spillStats();
     }
 
-    private Object getObjectImpl(int columnIndex) throws SQLException {
+    @Override
+    public void close() throws SQLException {
+        if (!closed) {
+            this.releaseBatches();
+            closed = true;
+        }
+    }
+
+    @Override
+    public boolean wasNull() {
+        return this.wasNull;
+    }
+
+    private ColumnAccessor getAccessor(int columnIndex) throws SQLException {
         Preconditions.checkState(currentVectorRow >= 0 && currentVectorRow < root.getRowCount());
 
         // Column index is 1-based in JDBC
-        if (columnIndex < 1 || columnIndex > root.getFieldVectors().size()) {
+        if (columnIndex < 1 || columnIndex > accessors.length) {
             throw new SQLException(String.format("Can't get value at index %d from result set with %d columns",
-                    columnIndex, root.getFieldVectors().size()));
+                    columnIndex, accessors.length));
         }
 
-        Object storage = root.getVector(columnIndex - 1).getObject(currentVectorRow);
-        this.wasNull = storage == null;
-        Field arrowField = getArrowField(columnIndex);
+        ColumnAccessor accessor = accessors[columnIndex - 1];
+        this.wasNull = accessor.isNull(currentVectorRow);
+        return accessor;
+    }
+
+    private Object getObjectImpl(int columnIndex) throws SQLException {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
+            return null;
+        }
 
         try {
-            return refineStorage(storage, arrowField);
+            return accessor.getObject(currentVectorRow);
         } catch (Exception e) {
-            throw new SQLException(
-                    String.format("Can't unwrap storage of field '%s' at index %d", arrowField.getName(), columnIndex),
-                    e);
+            throw unwrapError(columnIndex, e);
         }
     }
 
+    private SQLException unwrapError(int columnIndex, Exception e) {
+        return new SQLException(
+                String.format("Can't unwrap storage of field '%s' at index %d",
+                        root.getSchema().getFields().get(columnIndex - 1).getName(), columnIndex),
+                e);
+    }
+
     private <T> T getTypedPrimitive(int columnIndex, Class<T> cls, T valueIfNull) throws SQLException {
         try {
             T maybeValue = cls.cast(getObjectImpl(columnIndex));
@@ -263,47 +427,58 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public String getString(int columnIndex) throws SQLException {
-        Object value = getObjectImpl(columnIndex);
-        if (value == null) {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
             return null;
-        } else {
-            return value.toString();
+        }
+
+        try {
+            return accessor.getString(currentVectorRow);
+        } catch (Exception e) {
+            throw unwrapError(columnIndex, e);
         }
     }
 
     @Override
     public boolean getBoolean(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Boolean.class, false);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? false : accessor.getBoolean(currentVectorRow);
     }
 
     @Override
     public byte getByte(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Byte.class, (byte) 0);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? (byte) 0 : accessor.getByte(currentVectorRow);
     }
 
     @Override
     public short getShort(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Short.class, (short) 0);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? (short) 0 : accessor.getShort(currentVectorRow);
     }
 
     @Override
     public int getInt(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Integer.class, 0);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? 0 : accessor.getInt(currentVectorRow);
     }
 
     @Override
     public long getLong(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Long.class, 0L);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? 0L : accessor.getLong(currentVectorRow);
     }
 
     @Override
     public float getFloat(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Float.class, (float) 0.0);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? (float) 0.0 : accessor.getFloat(currentVectorRow);
     }
 
     @Override
     public double getDouble(int columnIndex) throws SQLException {
-        return getTypedPrimitive(columnIndex, Double.class, 0.0);
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? 0.0 : accessor.getDouble(currentVectorRow);
     }
 
     @Override
@@ -363,12 +538,122 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public InputStream getBinaryStream(int columnIndex) throws SQLException {
-        byte[] bytes = getBytes(columnIndex);
-        if (bytes == null) {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
             return null;
-        } else {
-            return new ByteArrayInputStream(bytes);
         }
+
+        try {
+            return accessor.getBinaryStream(currentVectorRow);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unwrapError(columnIndex, e);
+        }
+    }
+
+    /**
+     * Get the value of a binary column as a read-only view of the result data, without copying it.
+     * <p>
+     * The view is only valid until the cursor moves: it must be consumed, or copied, before calling {@link #next()}.
+     * Unlike the streams of {@link #getBinaryStream(int)}, which fail once the result set moves on to another batch,
+     * the view can't check that it is still valid: reading it afterwards reads memory that may have been released.
+     * Dictionary-encoded binary columns return a buffer over their decoded bytes; other columns can't be read as
+     * buffers, and fail with an {@link SQLException}.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @param columnIndex the first column is 1, the second is 2, ...
+     * @return the column value as a buffer, or null if the value is SQL NULL
+     */
+    public ByteBuffer getByteBuffer(int columnIndex) throws SQLException {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
+            return null;
+        }
+
+        try {
+            return accessor.getByteBuffer(currentVectorRow);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unwrapError(columnIndex, e);
+        }
+    }
+
+    /**
+     * @see #getByteBuffer(int)
+     */
+    public ByteBuffer getByteBuffer(String columnLabel) throws SQLException {
+        return getByteBuffer(findColumn(columnLabel));
+    }
+
+    /**
+     * Copy the elements of a list column of doubles, such as an embedding or coordinates, into the given array.
+     * <p>
+     * The elements are copied in bulk from the result data rather than boxed one by one. The array must be large
+     * enough to hold them, and the list must not contain nulls.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @param columnIndex the first column is 1, the second is 2, ...
+     * @param dst         the array to copy the elements into, from its start
+     * @return the number of elements copied, or 0 if the value is SQL NULL
+     */
+    public int getDoubles(int columnIndex, double[] dst) throws SQLException {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
+            return 0;
+        }
+
+        try {
+            return accessor.getDoubles(currentVectorRow, dst);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unwrapError(columnIndex, e);
+        }
+    }
+
+    /**
+     * @see #getDoubles(int, double[])
+     */
+    public int getDoubles(String columnLabel, double[] dst) throws SQLException {
+        return getDoubles(findColumn(columnLabel), dst);
+    }
+
+    /**
+     * Copy the elements of a list column of floats, such as an embedding, into the given array.
+     * <p>
+     * The elements are copied in bulk from the result data rather than boxed one by one. The array must be large
+     * enough to hold them, and the list must not contain nulls.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @param columnIndex the first column is 1, the second is 2, ...
+     * @param dst         the array to copy the elements into, from its start
+     * @return the number of elements copied, or 0 if the value is SQL NULL
+     */
+    public int getFloats(int columnIndex, float[] dst) throws SQLException {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
+            return 0;
+        }
+
+        try {
+            return accessor.getFloats(currentVectorRow, dst);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unwrapError(columnIndex, e);
+        }
+    }
+
+    /**
+     * @see #getFloats(int, float[])
+     */
+    public int getFloats(String columnLabel, float[] dst) throws SQLException {
+        return getFloats(findColumn(columnLabel), dst);
     }
 
     @Override
@@ -508,7 +793,8 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public boolean isAfterLast() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.checkScrollable();
+        return this.rowCount() > 0 && currentRow >= this.rowCount();
     }
 
     @Override
@@ -518,47 +804,57 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public boolean isLast() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.checkScrollable();
+        return currentRow >= 0 && currentRow == this.rowCount() - 1;
     }
 
     @Override
     public void beforeFirst() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.moveTo(-1);
     }
 
     @Override
     public void afterLast() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.checkScrollable();
+        this.moveTo(this.rowCount());
     }
 
     @Override
     public boolean first() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return this.moveTo(0);
     }
 
     @Override
     public boolean last() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.checkScrollable();
+        // An empty result set has no last row: stay before its first one.
+        return this.moveTo(this.rowCount() - 1);
     }
 
     @Override
     public int getRow() {
+        if (this.scrollable != null && currentRow >= this.rowCount()) {
+            return 0;
+        }
         return currentRow + 1;
     }
 
     @Override
     public boolean absolute(int row) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.checkScrollable();
+        // Negative rows count back from the end, -1 being the last row; 0 is before the first row.
+        return this.moveTo(row >= 0 ? row - 1 : this.rowCount() + row);
     }
 
     @Override
     public boolean relative(int rows) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        this.checkScrollable();
+        return this.moveTo((int) Math.max(-1, Math.min((long) currentRow + rows, this.rowCount())));
     }
 
     @Override
     public boolean previous() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return this.moveTo(currentRow - 1);
     }
 
     @Override
@@ -571,19 +867,30 @@ public class WherobotsResultSet implements ResultSet {
         return ResultSet.FETCH_FORWARD;
     }
 
+    /**
+     * Sets the number of rows of the pages of results retrieved from now on, when the statement's fetch size had the
+     * results sent in pages; otherwise all results were retrieved already, and this is only a hint.
+     */
     @Override
     public void setFetchSize(int rows) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (rows < 0) {
+            throw new SQLException("Invalid fetchSize value: " + rows);
+        }
+
+        this.fetchSize = rows;
+        if (this.statement instanceof WherobotsStatement ws) {
+            ws.setResultFetchSize(rows);
+        }
     }
 
     @Override
     public int getFetchSize() {
-        return 0;
+        return this.fetchSize;
     }
 
     @Override
     public int getType() {
-        return ResultSet.TYPE_FORWARD_ONLY;
+        return this.scrollable != null ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
     }
 
     @Override
@@ -856,9 +1163,13 @@ public class WherobotsResultSet implements ResultSet {
         throw new SQLFeatureNotSupportedException();
     }
 
+    /**
+     * Returns list and map columns as views over their elements, converted only when read. The view reads from the
+     * current batch, and is only valid until the result set moves on to another batch.
+     */
     @Override
     public Array getArray(int columnIndex) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return getObject(columnIndex, Array.class);
     }
 
     @Override
@@ -883,17 +1194,22 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public Array getArray(String columnLabel) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return getArray(findColumn(columnLabel));
     }
 
     @Override
     public Date getDate(int columnIndex, Calendar cal) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (cal == null) {
+            return getDate(columnIndex);
+        }
+
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? null : accessor.getDate(currentVectorRow, cal.getTimeZone().toZoneId());
     }
 
     @Override
     public Date getDate(String columnLabel, Calendar cal) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return getDate(findColumn(columnLabel), cal);
     }
 
     @Override
@@ -908,12 +1224,38 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (cal == null) {
+            return getTimestamp(columnIndex);
+        }
+
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? null : accessor.getTimestamp(currentVectorRow, cal.getTimeZone().toZoneId());
     }
 
     @Override
     public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return getTimestamp(findColumn(columnLabel), cal);
+    }
+
+    /**
+     * Get the value of a date or timestamp column as microseconds since the epoch, without allocating any object.
+     * Timestamps without a time zone are counted as if in UTC.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code resultSet.unwrap(WherobotsResultSet.class)}.
+     *
+     * @param columnIndex the first column is 1, the second is 2, ...
+     * @return the column value in microseconds since the epoch, or 0 if the value is SQL NULL
+     */
+    public long getEpochMicros(int columnIndex) throws SQLException {
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        return this.wasNull ? 0L : accessor.getEpochMicros(currentVectorRow);
+    }
+
+    /**
+     * @see #getEpochMicros(int)
+     */
+    public long getEpochMicros(String columnLabel) throws SQLException {
+        return getEpochMicros(findColumn(columnLabel));
     }
 
     @Override
@@ -1216,21 +1558,40 @@ public class WherobotsResultSet implements ResultSet {
 
     @Override
     public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (type == null) {
+            throw new SQLException("The requested type must not be null");
+        }
+
+        ColumnAccessor accessor = getAccessor(columnIndex);
+        if (this.wasNull) {
+            return null;
+        }
+
+        try {
+            return accessor.getObject(currentVectorRow, type);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unwrapError(columnIndex, e);
+        }
     }
 
     @Override
     public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return getObject(findColumn(columnLabel), type);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (isWrapperFor(iface)) {
+            return (T) this;
+        }
+        throw new SQLException("Cannot unwrap to " + iface.getName());
     }
 
     @Override
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return iface != null && iface.isAssignableFrom(getClass());
     }
 }
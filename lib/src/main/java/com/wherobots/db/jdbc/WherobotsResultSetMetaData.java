@@ -1,8 +1,8 @@
 package com.wherobots.db.jdbc;
 
+import com.wherobots.db.jdbc.internal.ColumnIndex;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.Schema;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,23 +16,26 @@ public class WherobotsResultSetMetaData implements ResultSetMetaData {
 
     private final Schema schema;
     private final String[] fields;
+    private final ColumnIndex index;
 
     public WherobotsResultSetMetaData(Schema schema) {
         this.schema = schema;
         this.fields = schema.getFields().stream().map(Field::getName).toArray(String[]::new);
+        this.index = new ColumnIndex(this.fields);
         if (logger.isDebugEnabled()) {
             logger.debug("ResultSet({})", Arrays.asList(fields));
         }
     }
 
+    /**
+     * @return the 0-based index of the first column with the given name, matched exactly or else ignoring case
+     */
     public int getColumnIndex(String name) throws SQLException {
-        for (int i = 0; i < this.fields.length ; i++) {
-            if (StringUtils.equals(name, this.fields[i])) {
-                return i;
-            }
+        int index = this.index.indexOf(name);
+        if (index < 0) {
+            throw new SQLException(String.format("Column %s does not exist in schema", name));
         }
-
-        throw new SQLException(String.format("Column %s does not exist in schema", name));
+        return index;
     }
 
     @Override
@@ -1,8 +1,16 @@
 package com.wherobots.db.jdbc;
 
+import com.wherobots.db.jdbc.internal.BatchSource;
 import com.wherobots.db.jdbc.internal.ExecutionResult;
+import com.wherobots.db.jdbc.internal.PagedBatchSource;
+import com.wherobots.db.jdbc.internal.StoredBatchSource;
+import com.wherobots.db.jdbc.internal.StreamBatchSource;
+import com.wherobots.db.jdbc.models.MemoryStats;
 import com.wherobots.db.jdbc.models.Store;
 import com.wherobots.db.jdbc.models.StoreResult;
+import org.apache.arrow.memory.BufferAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.sql.Connection;
@@ -18,32 +26,107 @@ import java.util.concurrent.TimeUnit;
 
 public class WherobotsStatement implements Statement {
 
+    private static final Logger logger = LoggerFactory.getLogger(WherobotsStatement.class);
+
     public static final int DEFAULT_QUERY_TIMEOUT_SECONDS = 300;
 
     private final BlockingQueue<ExecutionResult> queue;
     private final WherobotsJdbcConnection connection;
+    private final int resultSetType;
 
     private int timeoutSeconds = DEFAULT_QUERY_TIMEOUT_SECONDS;
     private int maxRows = 0;
+    private int fetchSize = 0;
 
     private volatile String executionId;
+    // The allocator of this statement's results, created when it is executed.
+    private volatile BufferAllocator allocator;
+    // The pages of results still being retrieved, if the session sends them in pages.
+    private volatile PagedBatchSource pages;
     private ResultSet results;
     private int updateCount = -1;
+    private SQLWarning warnings;
 
     private boolean closeOnCompletion = false;
     private boolean closed = false;
+    // Whether results are no longer awaited, because the statement was closed or timed out.
+    private volatile boolean abandoned = false;
 
     // Store configuration and result
     private Store store;
     private StoreResult storeResult;
 
     public WherobotsStatement(WherobotsJdbcConnection connection) {
+        this(connection, ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    /**
+     * @param resultSetType the type of the result sets of this statement, {@link ResultSet#TYPE_FORWARD_ONLY} or
+     *                      {@link ResultSet#TYPE_SCROLL_INSENSITIVE}
+     */
+    public WherobotsStatement(WherobotsJdbcConnection connection, int resultSetType) {
         this.connection = connection;
         this.queue = new ArrayBlockingQueue<>(1);
+        this.resultSetType = resultSetType;
+        connection.register(this);
+    }
+
+    /**
+     * The allocator of this statement's results, bounded by the statement memory limit.
+     */
+    BufferAllocator allocator() {
+        return this.allocator;
+    }
+
+    /**
+     * Delivers the outcome of this statement's execution. Called from the connection's dispatcher or decoder threads,
+     * this never blocks: a statement only expects a single result, so anything beyond it is released and dropped,
+     * as is a result arriving after the statement was closed or timed out.
+     */
+    void onExecutionResult(ExecutionResult result) {
+        PagedBatchSource pages = this.pages;
+        if (pages != null) {
+            pages.onPage(result);
+            return;
+        }
+
+        if (!this.abandoned && this.queue.offer(result)) {
+            // The statement may have been abandoned while the result was being queued.
+            if (this.abandoned) {
+                this.discardResults();
+            }
+            return;
+        }
+
+        if (!this.abandoned) {
+            logger.warn("Dropping unexpected result for query {}.", this.executionId);
+        }
+        this.release(result);
+    }
+
+    /**
+     * Stops awaiting results, and releases any result already delivered but not taken by {@link #execute(String)}.
+     */
+    private void abandon() {
+        this.abandoned = true;
+        this.discardResults();
     }
 
-    void onExecutionResult(ExecutionResult result) throws InterruptedException {
-        this.queue.put(result);
+    private void discardResults() {
+        ExecutionResult result;
+        while ((result = this.queue.poll()) != null) {
+            this.release(result);
+        }
+    }
+
+    private void release(ExecutionResult result) {
+        if (result.result() != null) {
+            try {
+                result.result().close();
+            } catch (IOException e) {
+                logger.warn("Failed to release dropped result for query {}.", this.executionId, e);
+            }
+        }
     }
 
     // ==================== Store Configuration (Wherobots extension) ====================
@@ -86,6 +169,20 @@ public class WherobotsStatement implements Statement {
         return this.storeResult;
     }
 
+    /**
+     * Get the memory usage of this statement's results.
+     * <p>
+     * This is a Wherobots-specific extension. Access via {@code statement.unwrap(WherobotsStatement.class)}.
+     *
+     * @return the memory usage of this statement's results
+     */
+    public MemoryStats getMemoryStats() {
+        BufferAllocator allocator = this.allocator;
+        return allocator != null
+                ? MemoryStats.of(allocator)
+                : new MemoryStats(0, 0, this.connection.statementMemoryLimit());
+    }
+
     // ==================== JDBC Statement Implementation ====================
 
     @Override
@@ -108,10 +205,15 @@ public class WherobotsStatement implements Statement {
 
     @Override
     public void close() throws SQLException {
+        this.abandon();
         if (this.results != null) {
             this.results.close();
         }
+        if (!this.closed && this.allocator != null) {
+            WherobotsJdbcConnection.closeAllocator(this.allocator);
+        }
         this.closed = true;
+        this.connection.deregister(this);
     }
 
     @Override
@@ -168,11 +270,20 @@ public class WherobotsStatement implements Statement {
 
     @Override
     public SQLWarning getWarnings() {
-        return null;
+        return this.warnings;
     }
 
     @Override
     public void clearWarnings() {
+        this.warnings = null;
+    }
+
+    private void addWarning(SQLWarning warning) {
+        if (this.warnings == null) {
+            this.warnings = warning;
+        } else {
+            this.warnings.setNextWarning(warning);
+        }
     }
 
     @Override
@@ -182,15 +293,21 @@ public class WherobotsStatement implements Statement {
 
     @Override
     public boolean execute(String sql) throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Statement is closed");
+        }
         if (this.executionId != null) {
             throw new IllegalStateException("This statement has already been executed");
         }
 
+        this.allocator = this.connection.newStatementAllocator();
         this.executionId = this.connection.execute(sql, this, this.store);
 
         try {
+            // The queue waits on a lock rather than a monitor, so this parks virtual threads without pinning them.
             ExecutionResult result = this.queue.poll(this.timeoutSeconds, TimeUnit.SECONDS);
             if (result == null) {
+                this.abandon();
                 throw new SQLTimeoutException(
                         String.format("No results received after %d second(s)", this.timeoutSeconds));
             }
@@ -207,12 +324,39 @@ public class WherobotsStatement implements Statement {
             }
 
             // TODO: differentiate between queries and insert/update/delete results
-            this.results = new WherobotsResultSet(this, result.result());
+            BatchSource source;
+            if (result.hasMore()) {
+                // Further pages are requested as the application reads through the results.
+                String executionId = this.executionId;
+                this.pages = new PagedBatchSource(result.result(), true, this.fetchSize,
+                        size -> this.connection.retrieveResults(executionId, size), this.timeoutSeconds);
+                source = this.pages;
+            } else {
+                source = new StreamBatchSource(result.result());
+            }
+
+            boolean scrollable = this.resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE;
+            source = this.connection.batchSource(source, this.allocator, scrollable);
+            if (scrollable && !(source instanceof StoredBatchSource)) {
+                // Results that can't be stored for scrolling are downgraded to forward-only.
+                this.addWarning(new SQLWarning(
+                        "Results with nested dictionary-encoded fields can only be read forward; "
+                                + "returning a forward-only result set", "01000"));
+                scrollable = false;
+            }
+            this.results = new WherobotsResultSet(this, source,
+                    scrollable ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY);
             return true;
         } catch (InterruptedException e) {
-            // Pass through
+            this.abandon();
         } catch (IOException e) {
-            throw new SQLException(e);
+            throw WherobotsResultSet.isOutOfMemory(e) ? WherobotsResultSet.outOfMemory(this, e) : new SQLException(e);
+        } catch (RuntimeException e) {
+            // Storing the results, or reading ahead, may exceed the statement's memory limit before they are read.
+            if (WherobotsResultSet.isOutOfMemory(e)) {
+                throw WherobotsResultSet.outOfMemory(this, e);
+            }
+            throw e;
         }
 
         throw new SQLTimeoutException();
@@ -249,14 +393,32 @@ public class WherobotsStatement implements Statement {
         return ResultSet.FETCH_FORWARD;
     }
 
+    /**
+     * Sets the number of rows to retrieve at once: the session then sends the results in pages of up to this many
+     * rows, each requested once the application has read through the previous one. 0 retrieves all results at once.
+     */
     @Override
-    public void setFetchSize(int rows) throws SQLException {
-        // Ignored
+    public void setFetchSize(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Invalid fetchSize value");
+        }
+
+        this.fetchSize = rows;
     }
 
     @Override
     public int getFetchSize() {
-        return 0;
+        return this.fetchSize;
+    }
+
+    /**
+     * Applies the fetch size of this statement's result set to the pages of results still to be retrieved.
+     */
+    void setResultFetchSize(int rows) {
+        PagedBatchSource pages = this.pages;
+        if (pages != null) {
+            pages.setFetchSize(rows);
+        }
     }
 
     @Override
@@ -266,7 +428,7 @@ public class WherobotsStatement implements Statement {
 
     @Override
     public int getResultSetType() {
-        return ResultSet.TYPE_FORWARD_ONLY;
+        return this.resultSetType;
     }
 
     @Override
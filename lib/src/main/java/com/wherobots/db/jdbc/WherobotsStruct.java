@@ -0,0 +1,107 @@
+package com.wherobots.db.jdbc;
+
+import com.wherobots.db.jdbc.internal.ColumnAccessor;
+import com.wherobots.db.jdbc.internal.ColumnIndex;
+
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Struct;
+import java.util.Map;
+
+/**
+ * A struct value of a result set, viewing its attributes in the child vectors of the column rather than copying
+ * them: attributes are only converted when read, and only those read.
+ * <p>
+ * The view reads from the batch holding its row, and is only valid until the result set moves on to another batch:
+ * reading it afterwards throws an {@link SQLException}.
+ * {@link #getAttribute(String)} and {@link #getAttribute(String, Class)} read single attributes by name, the latter
+ * also as nested views with {@link java.sql.Array} or {@link Struct}.
+ * </p>
+ */
+public final class WherobotsStruct implements Struct {
+
+    private final ColumnAccessor column;
+    private final int generation;
+    private final ColumnAccessor[] attributes;
+    private final ColumnIndex names;
+    private final int row;
+
+    /**
+     * @param column     the accessor this struct was read with, bound to the batch holding it
+     * @param attributes the accessors of the attributes, bound to the child vectors of the column
+     * @param names      the index of the attributes by name
+     * @param row        the row of this struct in those vectors
+     */
+    public WherobotsStruct(ColumnAccessor column, ColumnAccessor[] attributes, ColumnIndex names, int row) {
+        this.column = column;
+        this.generation = column.generation();
+        this.attributes = attributes;
+        this.names = names;
+        this.row = row;
+    }
+
+    /**
+     * Read a single attribute of this struct.
+     * <p>
+     * This is a Wherobots-specific extension.
+     *
+     * @param name the name of the attribute, matched exactly or else ignoring case
+     * @return the attribute, converted like {@link ResultSet#getObject(int)} would
+     */
+    public Object getAttribute(String name) throws SQLException {
+        ColumnAccessor attribute = this.attribute(name);
+        return attribute.isNull(this.row) ? null : attribute.getObject(this.row);
+    }
+
+    /**
+     * Read a single attribute of this struct as the given type.
+     * <p>
+     * This is a Wherobots-specific extension.
+     *
+     * @param name the name of the attribute, matched exactly or else ignoring case
+     * @param type the type to read the attribute as, like {@link ResultSet#getObject(int, Class)} would
+     * @return the attribute
+     */
+    public <T> T getAttribute(String name, Class<T> type) throws SQLException {
+        ColumnAccessor attribute = this.attribute(name);
+        return attribute.isNull(this.row) ? null : attribute.getObject(this.row, type);
+    }
+
+    private ColumnAccessor attribute(String name) throws SQLException {
+        this.checkBatch();
+        int index = this.names.indexOf(name);
+        if (index < 0) {
+            throw new SQLException(String.format("Attribute %s does not exist in struct", name));
+        }
+        return this.attributes[index];
+    }
+
+    private void checkBatch() throws SQLException {
+        if (this.column.generation() != this.generation) {
+            throw new SQLException("Struct read after its result set moved on to another batch");
+        }
+    }
+
+    @Override
+    public String getSQLTypeName() {
+        return JDBCType.STRUCT.getName();
+    }
+
+    @Override
+    public Object[] getAttributes() throws SQLException {
+        this.checkBatch();
+        Object[] values = new Object[this.attributes.length];
+        for (int i = 0; i < values.length; i++) {
+            ColumnAccessor attribute = this.attributes[i];
+            values[i] = attribute.isNull(this.row) ? null : attribute.getObject(this.row);
+        }
+        return values;
+    }
+
+    @Override
+    public Object[] getAttributes(Map<String, Class<?>> map) throws SQLException {
+        WherobotsArray.checkTypeMap(map);
+        return this.getAttributes();
+    }
+}
@@ -0,0 +1,39 @@
+package com.wherobots.db.jdbc.internal;
+
+import com.wherobots.db.jdbc.models.SpillStats;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The record batches of a result set, handed out one at a time.
+ */
+public interface BatchSource extends Closeable {
+
+    /**
+     * @return the root holding the batch last returned by {@link #next()}, or an empty root with the schema of the
+     * results before the first batch is loaded
+     */
+    VectorSchemaRoot root();
+
+    /**
+     * Loads the next batch. Roots returned by earlier calls may be reused for it, or released.
+     *
+     * @return the root holding the batch, or null once the results are exhausted
+     */
+    VectorSchemaRoot next() throws IOException;
+
+    /**
+     * @return the dictionaries of the dictionary-encoded columns of the batches
+     */
+    DictionaryProvider dictionaries();
+
+    /**
+     * @return statistics about the batches spilled to disk by this source
+     */
+    default SpillStats spillStats() {
+        return SpillStats.NONE;
+    }
+}
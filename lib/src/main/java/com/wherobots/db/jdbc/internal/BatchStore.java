@@ -0,0 +1,213 @@
+package com.wherobots.db.jdbc.internal;
+
+import com.wherobots.db.jdbc.models.SpillStats;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.ForeignAllocation;
+import org.apache.arrow.memory.util.MemoryUtil;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ReadChannel;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageMetadataResult;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All the record batches of a result, kept locally for them to be read in any order.
+ * <p>
+ * Batches are held in memory up to a threshold. Past it, this batch and all following ones are spilled to a
+ * temporary Arrow IPC file, uncompressed, and read back from it through memory mapping: loading a spilled batch maps
+ * its body and points the vectors of a root at it, without copying it into direct memory. The file is deleted when
+ * the store is closed.
+ * </p>
+ * <p>
+ * Dictionaries may be replaced from one batch to the next, so dictionary-encoded columns are decoded as batches are
+ * stored; results with dictionary-encoded fields nested in other columns can't be stored.
+ * </p>
+ */
+public final class BatchStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchStore.class);
+
+    private static final String SPILL_FILE_PREFIX = "wherobots-results-";
+    private static final String SPILL_FILE_SUFFIX = ".arrow";
+
+    private final Schema schema;
+    private final BufferAllocator allocator;
+    private final List<VectorSchemaRoot> held = new ArrayList<>();
+    private final List<ArrowBlock> spilled = new ArrayList<>();
+    private final List<Integer> rowCounts = new ArrayList<>();
+
+    private Path file;
+    private FileChannel channel;
+    private SpillStats spillStats = SpillStats.NONE;
+
+    // The root spilled batches are loaded into.
+    private VectorSchemaRoot mapped;
+
+    private BatchStore(Schema schema, BufferAllocator allocator) {
+        this.schema = schema;
+        this.allocator = allocator;
+    }
+
+    /**
+     * Reads all the batches of the given source into a new store, then closes the source.
+     *
+     * @param source    the batches to store
+     * @param allocator the allocator of the batches held in memory; must share its root with the source's
+     * @param threshold the number of bytes of batches to hold in memory before spilling to disk
+     * @param directory the directory to create the spill file in, or null for the default temporary directory
+     */
+    public static BatchStore drain(BatchSource source, BufferAllocator allocator, long threshold, Path directory)
+            throws IOException {
+        Schema schema = Batches.decode(source.root().getSchema(), source.dictionaries());
+        BatchStore store = new BatchStore(schema, allocator);
+        try (source) {
+            long heldBytes = 0;
+            VectorSchemaRoot batch;
+            while ((batch = source.next()) != null) {
+                long size = Batches.bufferSize(batch);
+                if (heldBytes + size > threshold) {
+                    store.spill(source, directory);
+                    break;
+                }
+
+                store.held.add(Batches.detach(batch, source.dictionaries(), allocator));
+                store.rowCounts.add(batch.getRowCount());
+                heldBytes += size;
+            }
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Writes the current batch of the source, and all remaining ones, to a new spill file.
+     */
+    private void spill(BatchSource source, Path directory) throws IOException {
+        long start = System.nanoTime();
+        this.file = directory != null
+                ? Files.createTempFile(directory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)
+                : Files.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+        int batches = 0;
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(this.schema, this.allocator);
+             ArrowFileWriter writer = new ArrowFileWriter(root, null,
+                     FileChannel.open(this.file, StandardOpenOption.WRITE))) {
+            writer.start();
+            VectorSchemaRoot batch = source.root();
+            do {
+                try (VectorSchemaRoot decoded = Batches.detach(batch, source.dictionaries(), this.allocator)) {
+                    Batches.transfer(decoded, root);
+                    writer.writeBatch();
+                }
+                this.rowCounts.add(batch.getRowCount());
+                batches++;
+            } while ((batch = source.next()) != null);
+            writer.end();
+            this.spilled.addAll(writer.getRecordBlocks());
+        }
+
+        this.channel = FileChannel.open(this.file, StandardOpenOption.READ);
+        this.mapped = VectorSchemaRoot.create(this.schema, this.allocator);
+        this.spillStats = new SpillStats(batches, this.channel.size(), Duration.ofNanos(System.nanoTime() - start));
+        logger.info("Spilled {} batch(es) of results, {} bytes, to {} in {}.",
+                batches, this.spillStats.bytes(), this.file, this.spillStats.time());
+    }
+
+    public Schema schema() {
+        return this.schema;
+    }
+
+    public int batchCount() {
+        return this.rowCounts.size();
+    }
+
+    public int rowCount(int index) {
+        return this.rowCounts.get(index);
+    }
+
+    public SpillStats spillStats() {
+        return this.spillStats;
+    }
+
+    /**
+     * Loads the batch at the given index. A batch held in memory comes in a root of its own, while spilled batches
+     * are all loaded into the same root: the returned root is only valid until the next call.
+     */
+    public VectorSchemaRoot load(int index) throws IOException {
+        if (index < this.held.size()) {
+            return this.held.get(index);
+        }
+
+        ArrowBlock block = this.spilled.get(index - this.held.size());
+        this.channel.position(block.getOffset());
+        MessageMetadataResult metadata = MessageSerializer.readMessage(new ReadChannel(this.channel));
+        if (metadata == null) {
+            throw new IOException("Unexpected end of spill file " + this.file);
+        }
+
+        MappedByteBuffer body = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                block.getOffset() + block.getMetadataLength(), block.getBodyLength());
+        try (ArrowBuf buffer = this.allocator.wrapForeignAllocation(new Mapping(body));
+             ArrowRecordBatch batch = MessageSerializer.deserializeRecordBatch(metadata, buffer)) {
+            new VectorLoader(this.mapped).load(batch);
+        }
+        return this.mapped;
+    }
+
+    /**
+     * A mapping of a spilled batch body, reference-counted through the buffers of the vectors pointing into it, and
+     * any exported or transferred from them. It is kept reachable until the last of them is released, after which
+     * the garbage collector unmaps it.
+     */
+    private static final class Mapping extends ForeignAllocation {
+
+        private MappedByteBuffer buffer;
+
+        Mapping(MappedByteBuffer buffer) {
+            super(buffer.capacity(), MemoryUtil.getByteBufferAddress(buffer));
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected void release0() {
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Releases the batches held in memory, and deletes the spill file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.held.forEach(VectorSchemaRoot::close);
+        this.held.clear();
+        if (this.mapped != null) {
+            this.mapped.close();
+        }
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        if (this.file != null) {
+            Files.deleteIfExists(this.file);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.wherobots.db.jdbc.internal;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Helpers handling record batches and their roots.
+ */
+public final class Batches {
+
+    private Batches() {}
+
+    /**
+     * Moves the batch held by the given root to a new root, leaving the former free to load the next batch into.
+     * Buffers are handed over rather than copied; the allocator must share its root with the given root's.
+     * <p>
+     * Top-level dictionary-encoded columns are decoded with the given dictionaries, which must be those of this
+     * batch: the new root has the schema returned by {@link #decode(Schema, DictionaryProvider)}, and no longer
+     * depends on dictionaries that may be replaced by the next batch.
+     * </p>
+     */
+    static VectorSchemaRoot detach(VectorSchemaRoot root, DictionaryProvider dictionaries, BufferAllocator allocator) {
+        Schema schema = root.getSchema();
+        VectorSchemaRoot batch = VectorSchemaRoot.create(decode(schema, dictionaries), allocator);
+        try {
+            if (!isDictionaryEncoded(schema)) {
+                transfer(root, batch);
+                return batch;
+            }
+
+            for (int i = 0; i < schema.getFields().size(); i++) {
+                FieldVector vector = root.getVector(i);
+                DictionaryEncoding encoding = vector.getField().getDictionary();
+                if (encoding == null) {
+                    vector.makeTransferPair(batch.getVector(i)).transfer();
+                    continue;
+                }
+                try (ValueVector decoded = DictionaryEncoder.decode(
+                        vector, dictionary(dictionaries, encoding), allocator)) {
+                    decoded.makeTransferPair(batch.getVector(i)).transfer();
+                }
+            }
+            batch.setRowCount(root.getRowCount());
+        } catch (RuntimeException e) {
+            batch.close();
+            throw e;
+        }
+        return batch;
+    }
+
+    /**
+     * Loads the batch held by a root into another root of the same schema, sharing its buffers.
+     */
+    static void transfer(VectorSchemaRoot from, VectorSchemaRoot to) {
+        try (ArrowRecordBatch buffers = new VectorUnloader(from).getRecordBatch()) {
+            new VectorLoader(to).load(buffers);
+        }
+    }
+
+    /**
+     * Tells whether results of the given schema have dictionary-encoded columns, at the top level or nested.
+     */
+    static boolean isDictionaryEncoded(Schema schema) {
+        return schema.getFields().stream().anyMatch(Batches::isDictionaryEncoded);
+    }
+
+    private static boolean isDictionaryEncoded(Field field) {
+        return field.getDictionary() != null || field.getChildren().stream().anyMatch(Batches::isDictionaryEncoded);
+    }
+
+    /**
+     * Tells whether results of the given schema have dictionary-encoded fields nested in other columns, which
+     * {@link #detach(VectorSchemaRoot, DictionaryProvider, BufferAllocator)} can't decode. Their dictionaries may be
+     * replaced from one batch to the next, so batches of those results can only be used in stream order, one at a
+     * time.
+     */
+    public static boolean hasNestedDictionaries(Schema schema) {
+        return schema.getFields().stream()
+                .flatMap(field -> field.getChildren().stream())
+                .anyMatch(Batches::isDictionaryEncoded);
+    }
+
+    /**
+     * @return the schema of the batches of results of the given schema once their top-level dictionary-encoded
+     * columns are decoded: those columns take the type of their dictionary's values
+     */
+    static Schema decode(Schema schema, DictionaryProvider dictionaries) {
+        if (schema.getFields().stream().allMatch(field -> field.getDictionary() == null)) {
+            return schema;
+        }
+        return new Schema(schema.getFields().stream().map(field -> decode(field, dictionaries)).toList(),
+                schema.getCustomMetadata());
+    }
+
+    private static Field decode(Field field, DictionaryProvider dictionaries) {
+        if (field.getDictionary() == null) {
+            return field;
+        }
+        Field values = dictionary(dictionaries, field.getDictionary()).getVector().getField();
+        return new Field(field.getName(),
+                new FieldType(field.isNullable(), values.getType(), null, field.getMetadata()),
+                values.getChildren());
+    }
+
+    private static Dictionary dictionary(DictionaryProvider dictionaries, DictionaryEncoding encoding) {
+        Dictionary dictionary = dictionaries.lookup(encoding.getId());
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Missing dictionary " + encoding.getId());
+        }
+        return dictionary;
+    }
+
+    /**
+     * @return the number of bytes of the buffers of the batch held by the given root
+     */
+    static long bufferSize(VectorSchemaRoot root) {
+        long size = 0;
+        for (FieldVector vector : root.getFieldVectors()) {
+            size += vector.getBufferSize();
+        }
+        return size;
+    }
+}
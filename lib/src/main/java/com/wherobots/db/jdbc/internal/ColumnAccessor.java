@@ -0,0 +1,1157 @@
+package com.wherobots.db.jdbc.internal;
+
+import com.wherobots.db.jdbc.WherobotsArray;
+import com.wherobots.db.jdbc.WherobotsStruct;
+import com.wherobots.db.jdbc.serde.ByteBufferInputStream;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.LargeVarBinaryVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.util.Text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.Struct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reads the values of a result set column.
+ * <p>
+ * Accessors are compiled once per schema from the column's {@link Field}, so that the type dispatch and the walk of
+ * nested fields happen once rather than for every cell, then bound to the column's vector each time a batch is
+ * loaded. Columns of the common primitive and temporal types get a dedicated accessor reading straight from their
+ * vector; all others convert the vector's objects with a conversion tree compiled for their field. Dictionary-encoded
+ * columns are read through their dictionary, whose entries are decoded once and reused across rows and batches.
+ * </p>
+ * <p>
+ * The value getters must only be called on non-null cells: callers check {@link #isNull(int)} first. The primitive
+ * getters convert like {@link Class#cast(Object)} would on {@link #getObject(int)}: reading a column as a type other
+ * than its own is an error.
+ * </p>
+ */
+public abstract class ColumnAccessor {
+
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final long MICROS_PER_DAY = SECONDS_PER_DAY * 1_000_000L;
+
+    // The number of times this accessor was bound, counted by those handing out views over their values.
+    int generation = 0;
+
+    /**
+     * Compiles the accessor for a column.
+     *
+     * @param field the column's field
+     * @param dictionaries the dictionaries of dictionary-encoded columns, typically the reader of the results
+     * @return an accessor, to {@link #bind(FieldVector)} before use
+     */
+    public static ColumnAccessor of(Field field, DictionaryProvider dictionaries) {
+        if (field.getDictionary() != null && dictionaries != null) {
+            Dictionary dictionary = dictionaries.lookup(field.getDictionary().getId());
+            if (dictionary != null) {
+                return new DictionaryAccessor(dictionary, dictionaries);
+            }
+        }
+
+        ArrowType type = field.getType();
+        return switch (type.getTypeID()) {
+            case Bool -> new BitAccessor();
+            case Int -> switch (((ArrowType.Int) type).getBitWidth()) {
+                // Unsigned integers have vectors of their own, which the generic accessor handles.
+                case 8 -> ((ArrowType.Int) type).getIsSigned() ? new TinyIntAccessor() : new GenericAccessor(field);
+                case 16 -> ((ArrowType.Int) type).getIsSigned() ? new SmallIntAccessor() : new GenericAccessor(field);
+                case 32 -> ((ArrowType.Int) type).getIsSigned() ? new IntAccessor() : new GenericAccessor(field);
+                case 64 -> ((ArrowType.Int) type).getIsSigned() ? new BigIntAccessor() : new GenericAccessor(field);
+                default -> new GenericAccessor(field);
+            };
+            case FloatingPoint -> switch (((ArrowType.FloatingPoint) type).getPrecision()) {
+                case SINGLE -> new Float4Accessor();
+                case DOUBLE -> new Float8Accessor();
+                default -> new GenericAccessor(field);
+            };
+            case Date -> switch (((ArrowType.Date) type).getUnit()) {
+                case DAY -> new DateDayAccessor();
+                case MILLISECOND -> new DateMilliAccessor();
+            };
+            case Timestamp -> new TimestampAccessor((ArrowType.Timestamp) type);
+            case Binary, LargeBinary, FixedSizeBinary -> new BinaryAccessor();
+            case List, LargeList, FixedSizeList, Map -> new ListAccessor(field, dictionaries);
+            case Struct -> new StructAccessor(field, dictionaries);
+            default -> new GenericAccessor(field);
+        };
+    }
+
+    /**
+     * Binds this accessor to the column's vector for the current batch.
+     */
+    public abstract void bind(FieldVector vector);
+
+    /**
+     * @return the number of times this accessor of list or struct values was bound to a vector: views over its
+     * values record it, to tell when they are read after it moved on to another batch
+     */
+    public int generation() {
+        return this.generation;
+    }
+
+    public abstract boolean isNull(int row);
+
+    /**
+     * @return the JDBC representation of the value at the given row
+     */
+    public abstract Object getObject(int row) throws SQLException;
+
+    public String getString(int row) throws SQLException {
+        Object value = this.getObject(row);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Returns a binary value as a buffer. Binary columns return a read-only view of the value in the vector, valid
+     * until the next batch is loaded; others wrap the value's bytes.
+     */
+    public ByteBuffer getByteBuffer(int row) throws SQLException {
+        byte[] value = this.cast(row, byte[].class);
+        return value == null ? null : ByteBuffer.wrap(value);
+    }
+
+    /**
+     * Returns a binary value as a stream. Binary columns return a stream over the value in the vector, which fails
+     * once the next batch is loaded; others read the value's bytes.
+     */
+    public InputStream getBinaryStream(int row) throws SQLException {
+        ByteBuffer value = this.getByteBuffer(row);
+        return value == null ? null : new ByteBufferInputStream(value);
+    }
+
+    public boolean getBoolean(int row) throws SQLException {
+        Boolean value = this.cast(row, Boolean.class);
+        return value != null && value;
+    }
+
+    public byte getByte(int row) throws SQLException {
+        Byte value = this.cast(row, Byte.class);
+        return value == null ? 0 : value;
+    }
+
+    public short getShort(int row) throws SQLException {
+        Short value = this.cast(row, Short.class);
+        return value == null ? 0 : value;
+    }
+
+    public int getInt(int row) throws SQLException {
+        Integer value = this.cast(row, Integer.class);
+        return value == null ? 0 : value;
+    }
+
+    public long getLong(int row) throws SQLException {
+        Long value = this.cast(row, Long.class);
+        return value == null ? 0L : value;
+    }
+
+    public float getFloat(int row) throws SQLException {
+        Float value = this.cast(row, Float.class);
+        return value == null ? 0.0f : value;
+    }
+
+    public double getDouble(int row) throws SQLException {
+        Double value = this.cast(row, Double.class);
+        return value == null ? 0.0 : value;
+    }
+
+    /**
+     * Returns the value as the requested type: its own JDBC type, a String, for temporal columns, one of
+     * {@link Instant}, {@link LocalDateTime}, {@link OffsetDateTime} and {@link LocalDate}, or for nested columns, a
+     * view with {@link Array} or {@link Struct}.
+     */
+    public <T> T getObject(int row, Class<T> type) throws SQLException {
+        if (type == String.class) {
+            return type.cast(this.getString(row));
+        }
+        if (type == Array.class) {
+            return type.cast(this.getArray(row));
+        }
+        if (type == Struct.class) {
+            return type.cast(this.getStruct(row));
+        }
+
+        Object value = this.getObject(row);
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        throw new SQLDataException(String.format(
+                "Cannot convert %s to %s", value.getClass().getName(), type.getName()));
+    }
+
+    /**
+     * Returns a list value as a view over its elements in the vector, valid until the next batch is loaded. Map values
+     * are lists of key and value structs.
+     */
+    public Array getArray(int row) throws SQLException {
+        throw new SQLDataException("Column is not a list");
+    }
+
+    /**
+     * Copies the elements of a list value of doubles into the given array, straight from the vector's data buffer.
+     *
+     * @return the number of elements copied
+     */
+    public int getDoubles(int row, double[] dst) throws SQLException {
+        throw new SQLDataException("Column is not a list");
+    }
+
+    /**
+     * Copies the elements of a list value of floats into the given array, straight from the vector's data buffer.
+     *
+     * @return the number of elements copied
+     */
+    public int getFloats(int row, float[] dst) throws SQLException {
+        throw new SQLDataException("Column is not a list");
+    }
+
+    /**
+     * Copies the given range of non-null double values into the given array, without boxing them.
+     */
+    public void copyDoubles(int from, double[] dst, int dstOffset, int length) throws SQLException {
+        throw new SQLDataException("Column is not of type double");
+    }
+
+    /**
+     * Copies the given range of non-null float values into the given array, without boxing them.
+     */
+    public void copyFloats(int from, float[] dst, int dstOffset, int length) throws SQLException {
+        throw new SQLDataException("Column is not of type float");
+    }
+
+    /**
+     * @return whether any of the values in the given range is null
+     */
+    public boolean anyNull(int from, int length) {
+        for (int row = from; row < from + length; row++) {
+            if (this.isNull(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a struct value as a view over its attributes in the vector, valid until the next batch is loaded.
+     */
+    public Struct getStruct(int row) throws SQLException {
+        throw new SQLDataException("Column is not a struct");
+    }
+
+    /**
+     * Returns a temporal value as microseconds since the epoch, without allocating.
+     */
+    public long getEpochMicros(int row) throws SQLException {
+        throw new SQLDataException("Column is not a date or timestamp");
+    }
+
+    /**
+     * Returns the value as a timestamp, placing local date-times (timestamps without a time zone) in the given zone.
+     */
+    public Timestamp getTimestamp(int row, ZoneId zone) throws SQLException {
+        return this.cast(row, Timestamp.class);
+    }
+
+    /**
+     * Returns the value as a date, at the start of its day in the given zone.
+     */
+    public Date getDate(int row, ZoneId zone) throws SQLException {
+        return this.cast(row, Date.class);
+    }
+
+    private <T> T cast(int row, Class<T> cls) throws SQLException {
+        try {
+            return cls.cast(this.getObject(row));
+        } catch (ClassCastException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private static final class BitAccessor extends ColumnAccessor {
+        private BitVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (BitVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row) != 0;
+        }
+
+        @Override
+        public boolean getBoolean(int row) {
+            return this.vector.get(row) != 0;
+        }
+    }
+
+    private static final class TinyIntAccessor extends ColumnAccessor {
+        private TinyIntVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (TinyIntVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public byte getByte(int row) {
+            return this.vector.get(row);
+        }
+    }
+
+    private static final class SmallIntAccessor extends ColumnAccessor {
+        private SmallIntVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (SmallIntVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public short getShort(int row) {
+            return this.vector.get(row);
+        }
+    }
+
+    private static final class IntAccessor extends ColumnAccessor {
+        private IntVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (IntVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public int getInt(int row) {
+            return this.vector.get(row);
+        }
+    }
+
+    private static final class BigIntAccessor extends ColumnAccessor {
+        private BigIntVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (BigIntVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public long getLong(int row) {
+            return this.vector.get(row);
+        }
+    }
+
+    private static final class Float4Accessor extends ColumnAccessor {
+        private Float4Vector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (Float4Vector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public float getFloat(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public boolean anyNull(int from, int length) {
+            return this.vector.getNullCount() > 0 && super.anyNull(from, length);
+        }
+
+        @Override
+        public void copyFloats(int from, float[] dst, int dstOffset, int length) throws SQLException {
+            if (this.anyNull(from, length)) {
+                throw new SQLDataException("Cannot copy null values into a float array");
+            }
+            if (length > 0) {
+                data(this.vector, from, length).asFloatBuffer().get(dst, dstOffset, length);
+            }
+        }
+    }
+
+    private static final class Float8Accessor extends ColumnAccessor {
+        private Float8Vector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (Float8Vector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return this.vector.get(row);
+        }
+
+        @Override
+        public boolean anyNull(int from, int length) {
+            return this.vector.getNullCount() > 0 && super.anyNull(from, length);
+        }
+
+        @Override
+        public void copyDoubles(int from, double[] dst, int dstOffset, int length) throws SQLException {
+            if (this.anyNull(from, length)) {
+                throw new SQLDataException("Cannot copy null values into a double array");
+            }
+            if (length > 0) {
+                data(this.vector, from, length).asDoubleBuffer().get(dst, dstOffset, length);
+            }
+        }
+    }
+
+    /**
+     * Returns the given range of values of a fixed-width vector as a buffer over its data, in Arrow's little-endian
+     * byte order, so that bulk reads from it copy memory rather than values one by one.
+     */
+    private static ByteBuffer data(BaseFixedWidthVector vector, int from, int length) {
+        int width = vector.getTypeWidth();
+        return vector.getDataBuffer().nioBuffer((long) from * width, length * width).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static final class DateDayAccessor extends ColumnAccessor {
+        private DateDayVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (DateDayVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return Date.valueOf(LocalDate.ofEpochDay(this.vector.get(row)));
+        }
+
+        @Override
+        public <T> T getObject(int row, Class<T> type) throws SQLException {
+            if (type == LocalDate.class) {
+                return type.cast(LocalDate.ofEpochDay(this.vector.get(row)));
+            }
+            Object value = convertInstant(Instant.ofEpochSecond(this.vector.get(row) * SECONDS_PER_DAY), UTC, type);
+            return value != null ? type.cast(value) : super.getObject(row, type);
+        }
+
+        @Override
+        public long getEpochMicros(int row) {
+            return this.vector.get(row) * MICROS_PER_DAY;
+        }
+
+        @Override
+        public Date getDate(int row, ZoneId zone) {
+            return toDate(LocalDate.ofEpochDay(this.vector.get(row)), zone);
+        }
+    }
+
+    private static final class DateMilliAccessor extends ColumnAccessor {
+        private DateMilliVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (DateMilliVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return new Date(this.vector.get(row));
+        }
+
+        @Override
+        public <T> T getObject(int row, Class<T> type) throws SQLException {
+            Object value = convertInstant(Instant.ofEpochMilli(this.vector.get(row)), UTC, type);
+            return value != null ? type.cast(value) : super.getObject(row, type);
+        }
+
+        @Override
+        public long getEpochMicros(int row) {
+            return Math.multiplyExact(this.vector.get(row), 1_000L);
+        }
+
+        @Override
+        public Date getDate(int row, ZoneId zone) {
+            return toDate(LocalDate.ofInstant(Instant.ofEpochMilli(this.vector.get(row)), UTC), zone);
+        }
+    }
+
+    /**
+     * Reads timestamp columns. Timestamps with a time zone are instants, converted to local date-times in their zone;
+     * timestamps without one are local date-times, stored as if in UTC.
+     */
+    private static final class TimestampAccessor extends ColumnAccessor {
+        private final TimeUnit unit;
+        private final ZoneId zone;
+        private TimeStampVector vector;
+
+        TimestampAccessor(ArrowType.Timestamp type) {
+            this.unit = type.getUnit();
+            this.zone = type.getTimezone() == null ? null : ZoneId.of(type.getTimezone());
+        }
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = (TimeStampVector) vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return toTimestamp(this.vector.get(row), this.unit);
+        }
+
+        @Override
+        public <T> T getObject(int row, Class<T> type) throws SQLException {
+            Instant instant = toInstant(this.vector.get(row), this.unit);
+            Object value = convertInstant(instant, this.zone != null ? this.zone : UTC, type);
+            return value != null ? type.cast(value) : super.getObject(row, type);
+        }
+
+        @Override
+        public long getEpochMicros(int row) {
+            long value = this.vector.get(row);
+            return switch (this.unit) {
+                case SECOND -> Math.multiplyExact(value, 1_000_000L);
+                case MILLISECOND -> Math.multiplyExact(value, 1_000L);
+                case MICROSECOND -> value;
+                case NANOSECOND -> Math.floorDiv(value, 1_000L);
+            };
+        }
+
+        @Override
+        public Timestamp getTimestamp(int row, ZoneId zone) {
+            Instant instant = toInstant(this.vector.get(row), this.unit);
+            if (this.zone == null) {
+                // A local date-time: place it in the requested zone.
+                instant = LocalDateTime.ofInstant(instant, UTC).atZone(zone).toInstant();
+            }
+            return Timestamp.from(instant);
+        }
+    }
+
+    private static final class BinaryAccessor extends ColumnAccessor {
+        private FieldVector vector;
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = vector;
+            this.generation++;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return this.vector.getObject(row);
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer(int row) {
+            ByteBuffer view;
+            if (this.vector instanceof VarBinaryVector v) {
+                view = v.getDataBuffer().nioBuffer(v.getStartOffset(row), v.getValueLength(row));
+            } else if (this.vector instanceof LargeVarBinaryVector v) {
+                view = v.getDataBuffer().nioBuffer(v.getStartOffset(row), v.getValueLength(row));
+            } else {
+                FixedSizeBinaryVector v = (FixedSizeBinaryVector) this.vector;
+                view = v.getDataBuffer().nioBuffer((long) row * v.getByteWidth(), v.getByteWidth());
+            }
+            return view.asReadOnlyBuffer();
+        }
+
+        @Override
+        public InputStream getBinaryStream(int row) {
+            return new BinaryStream(this, this.getByteBuffer(row));
+        }
+    }
+
+    /**
+     * A stream over a binary value in a vector, whose reads fail once its accessor is bound to another batch, as the
+     * buffers of the value's batch may be released by then.
+     */
+    private static final class BinaryStream extends InputStream {
+        private final ColumnAccessor column;
+        private final int generation;
+        private final ByteBufferInputStream bytes;
+
+        BinaryStream(ColumnAccessor column, ByteBuffer view) {
+            this.column = column;
+            this.generation = column.generation;
+            this.bytes = new ByteBufferInputStream(view);
+        }
+
+        private void checkBatch() throws IOException {
+            if (this.column.generation != this.generation) {
+                throw new IOException("Binary stream read after its result set moved on to another batch");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.checkBatch();
+            return this.bytes.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            this.checkBatch();
+            return this.bytes.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            this.checkBatch();
+            return this.bytes.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            this.checkBatch();
+            return this.bytes.available();
+        }
+    }
+
+    /**
+     * Reads a dictionary-encoded column: its vector holds indices into the dictionary, whose entries are read with an
+     * accessor of their own and cached once decoded.
+     * <p>
+     * A stream can replace a dictionary, or extend it with a delta, between batches; either way the dictionary's
+     * vector is reloaded in place. Replacing it gives the vector new buffers, which invalidates the cache; extending
+     * it only adds entries, which keeps the cache. Results retrieved in pages come in a stream per page, each with
+     * dictionaries of its own: the dictionary is looked up again on every batch, and a new one invalidates the cache.
+     * </p>
+     */
+    private static final class DictionaryAccessor extends ColumnAccessor {
+        private final long id;
+        private final DictionaryProvider dictionaries;
+        private final ColumnAccessor entries;
+        private Dictionary dictionary;
+        private BaseIntVector indices;
+
+        // Decoded entries, and the buffer of the dictionary's vector they were decoded from.
+        private Object[] objects = new Object[0];
+        private String[] strings = new String[0];
+        private ArrowBuf source;
+
+        DictionaryAccessor(Dictionary dictionary, DictionaryProvider dictionaries) {
+            this.id = dictionary.getEncoding().getId();
+            this.dictionaries = dictionaries;
+            this.dictionary = dictionary;
+            this.entries = of(dictionary.getVector().getField(), dictionaries);
+        }
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.indices = (BaseIntVector) vector;
+
+            Dictionary dictionary = this.dictionaries.lookup(this.id);
+            if (dictionary == null) {
+                throw new IllegalStateException("Missing dictionary " + this.id);
+            }
+            FieldVector values = dictionary.getVector();
+            this.entries.bind(values);
+
+            List<ArrowBuf> buffers = values.getFieldBuffers();
+            ArrowBuf source = buffers.isEmpty() ? null : buffers.get(0);
+            int count = values.getValueCount();
+            if (dictionary != this.dictionary || source != this.source) {
+                this.dictionary = dictionary;
+                this.source = source;
+                this.objects = new Object[count];
+                this.strings = new String[count];
+            } else if (count > this.objects.length) {
+                this.objects = Arrays.copyOf(this.objects, count);
+                this.strings = Arrays.copyOf(this.strings, count);
+            }
+        }
+
+        private int index(int row) {
+            return (int) this.indices.getValueAsLong(row);
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.indices.isNull(row) || this.entries.isNull(this.index(row));
+        }
+
+        @Override
+        public Object getObject(int row) throws SQLException {
+            int index = this.index(row);
+            Object value = this.objects[index];
+            if (value == null) {
+                value = this.entries.getObject(index);
+                this.objects[index] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public String getString(int row) throws SQLException {
+            int index = this.index(row);
+            String value = this.strings[index];
+            if (value == null) {
+                value = this.entries.getString(index);
+                this.strings[index] = value;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Reads all other columns through their vector's objects, converted for JDBC by a compiled {@link Converter}.
+     */
+    private static class GenericAccessor extends ColumnAccessor {
+        private final Converter converter;
+        private FieldVector vector;
+
+        GenericAccessor(Field field) {
+            this.converter = converter(field);
+        }
+
+        @Override
+        public void bind(FieldVector vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return this.vector.isNull(row);
+        }
+
+        @Override
+        public Object getObject(int row) throws SQLException {
+            return this.converter.convert(this.vector.getObject(row));
+        }
+    }
+
+    /**
+     * @return true if the field or any of its children is dictionary-encoded
+     */
+    private static boolean hasDictionary(Field field) {
+        return field.getDictionary() != null || field.getChildren().stream().anyMatch(ColumnAccessor::hasDictionary);
+    }
+
+    /**
+     * Reads list and map columns, whose objects are copied into lists and maps, also as views over the elements in
+     * the child vector, read with an accessor of their own.
+     * <p>
+     * The objects of the vector hold the indices of dictionary-encoded elements: lists with such elements are copied
+     * through the elements' accessor instead, which decodes them.
+     * </p>
+     */
+    private static final class ListAccessor extends GenericAccessor {
+        private final Field elementField;
+        private final ColumnAccessor elements;
+        private final boolean decoded;
+        private final boolean map;
+        // The size of fixed-size lists, whose vectors have no offsets; 0 for others.
+        private final int listSize;
+        private final boolean large;
+        private ArrowBuf offsets;
+
+        ListAccessor(Field field, DictionaryProvider dictionaries) {
+            super(field);
+            this.elementField = field.getChildren().get(0);
+            this.elements = of(this.elementField, dictionaries);
+            this.decoded = dictionaries != null && hasDictionary(this.elementField);
+            this.map = field.getType().getTypeID() == ArrowType.ArrowTypeID.Map;
+            this.listSize = field.getType() instanceof ArrowType.FixedSizeList fixed ? fixed.getListSize() : 0;
+            this.large = field.getType().getTypeID() == ArrowType.ArrowTypeID.LargeList;
+        }
+
+        @Override
+        public void bind(FieldVector vector) {
+            super.bind(vector);
+            this.offsets = this.listSize > 0 ? null : vector.getOffsetBuffer();
+            this.elements.bind(vector.getChildrenFromFields().get(0));
+            this.generation++;
+        }
+
+        private int offset(int row) {
+            if (this.listSize > 0) {
+                return row * this.listSize;
+            }
+            return this.large ? Math.toIntExact(this.offsets.getLong(row * 8L)) : this.offsets.getInt(row * 4L);
+        }
+
+        private int length(int row) {
+            return this.listSize > 0 ? this.listSize : this.offset(row + 1) - this.offset(row);
+        }
+
+        @Override
+        public Object getObject(int row) throws SQLException {
+            if (!this.decoded) {
+                return super.getObject(row);
+            }
+            if (this.isNull(row)) {
+                return null;
+            }
+
+            int offset = this.offset(row);
+            int length = this.length(row);
+            if (this.map) {
+                // Entries are structs of a key and a value, read as maps.
+                String key = this.elementField.getChildren().get(0).getName();
+                String value = this.elementField.getChildren().get(1).getName();
+                LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < length; i++) {
+                    Map<?, ?> entry = (Map<?, ?>) this.elements.getObject(offset + i);
+                    map.put(String.valueOf(entry.get(key)), entry.get(value));
+                }
+                return map;
+            }
+
+            ArrayList<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(this.elements.isNull(offset + i) ? null : this.elements.getObject(offset + i));
+            }
+            return list;
+        }
+
+        @Override
+        public Array getArray(int row) {
+            return new WherobotsArray(this, this.elementField, this.elements, this.offset(row), this.length(row));
+        }
+
+        @Override
+        public int getDoubles(int row, double[] dst) throws SQLException {
+            int length = this.fit(row, dst.length);
+            this.elements.copyDoubles(this.offset(row), dst, 0, length);
+            return length;
+        }
+
+        @Override
+        public int getFloats(int row, float[] dst) throws SQLException {
+            int length = this.fit(row, dst.length);
+            this.elements.copyFloats(this.offset(row), dst, 0, length);
+            return length;
+        }
+
+        private int fit(int row, int capacity) throws SQLException {
+            int length = this.length(row);
+            if (length > capacity) {
+                throw new SQLDataException(String.format(
+                        "Cannot copy a list of %d elements into an array of %d", length, capacity));
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Reads struct columns, whose objects are copied into maps, also as views over their attributes in the child
+     * vectors, each read with an accessor of its own. Like lists, structs with dictionary-encoded attributes are
+     * copied through the attributes' accessors, which decode them.
+     */
+    private static final class StructAccessor extends GenericAccessor {
+        private final ColumnAccessor[] attributes;
+        private final String[] fieldNames;
+        private final ColumnIndex names;
+        private final boolean decoded;
+
+        StructAccessor(Field field, DictionaryProvider dictionaries) {
+            super(field);
+            this.attributes = field.getChildren().stream()
+                    .map(child -> of(child, dictionaries))
+                    .toArray(ColumnAccessor[]::new);
+            this.fieldNames = field.getChildren().stream().map(Field::getName).toArray(String[]::new);
+            this.names = new ColumnIndex(this.fieldNames);
+            this.decoded = dictionaries != null
+                    && field.getChildren().stream().anyMatch(ColumnAccessor::hasDictionary);
+        }
+
+        @Override
+        public Object getObject(int row) throws SQLException {
+            if (!this.decoded) {
+                return super.getObject(row);
+            }
+            if (this.isNull(row)) {
+                return null;
+            }
+
+            LinkedHashMap<String, Object> struct = new LinkedHashMap<>();
+            for (int i = 0; i < this.attributes.length; i++) {
+                ColumnAccessor attribute = this.attributes[i];
+                struct.put(this.fieldNames[i], attribute.isNull(row) ? null : attribute.getObject(row));
+            }
+            return struct;
+        }
+
+        @Override
+        public void bind(FieldVector vector) {
+            super.bind(vector);
+            List<FieldVector> children = vector.getChildrenFromFields();
+            for (int i = 0; i < this.attributes.length; i++) {
+                this.attributes[i].bind(children.get(i));
+            }
+            this.generation++;
+        }
+
+        @Override
+        public Struct getStruct(int row) {
+            return new WherobotsStruct(this, this.attributes, this.names, row);
+        }
+    }
+
+    /**
+     * Converts the object representation of a value from its Arrow vector into its JDBC representation.
+     */
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(Object storage) throws SQLException;
+    }
+
+    private static final Converter IDENTITY = storage -> storage;
+
+    private static Converter nullSafe(Converter converter) {
+        return storage -> storage == null ? null : converter.convert(storage);
+    }
+
+    private static Converter converter(Field field) {
+        ArrowType type = field.getType();
+        return switch (type.getTypeID()) {
+            // These types don't need any special handling
+            case Null, Bool, Int, FloatingPoint, Utf8, LargeUtf8, Binary, LargeBinary, FixedSizeBinary -> IDENTITY;
+
+            // Nested temporal values come as epoch values (zoned), or as UTC local date-times (unzoned).
+            case Date -> switch (((ArrowType.Date) type).getUnit()) {
+                case DAY -> nullSafe(storage -> Date.valueOf(LocalDate.ofEpochDay((Integer) storage)));
+                case MILLISECOND -> nullSafe(storage -> storage instanceof LocalDateTime ldt
+                        ? new Date(ldt.toInstant(ZoneOffset.UTC).toEpochMilli())
+                        : new Date((Long) storage));
+            };
+            case Timestamp -> {
+                TimeUnit unit = ((ArrowType.Timestamp) type).getUnit();
+                yield nullSafe(storage -> storage instanceof LocalDateTime ldt
+                        ? Timestamp.from(ldt.toInstant(ZoneOffset.UTC))
+                        : toTimestamp((Long) storage, unit));
+            }
+
+            // Nested types
+            case Map -> mapConverter(field);
+            case Struct -> structConverter(field);
+            case List, LargeList, FixedSizeList -> listConverter(field);
+
+            // These types are probably not supported but we can return their storage
+            // as a fallback.
+            case Time, Interval, Duration, Union, Decimal -> IDENTITY;
+
+            default -> nullSafe(storage -> {
+                throw new SQLException(String.format("Element has unsupported Arrow type %s", type));
+            });
+        };
+    }
+
+    private static Converter mapConverter(Field field) {
+        Field mapEntryField = field.getChildren().get(0);
+        Field keyField = mapEntryField.getChildren().get(0);
+        Field valueField = mapEntryField.getChildren().get(1);
+
+        // Check key storage. We only support string storage so we can return
+        // Map<String, Object>
+        switch (keyField.getType().getTypeID()) {
+            case Utf8:
+            case LargeUtf8:
+                break;
+            default:
+                return nullSafe(storage -> {
+                    throw new SQLException(String.format(
+                            "Unsupported key storage for Map (expected String, got %s)", keyField.getType()));
+                });
+        }
+
+        String keyName = keyField.getName();
+        String valueName = valueField.getName();
+        Converter valueConverter = converter(valueField);
+        return nullSafe(storage -> {
+            List<?> entries = (List<?>) storage;
+            LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+            for (Object rawEntry : entries) {
+                Map<?, ?> entry = (Map<?, ?>) rawEntry;
+                String k = ((Text) entry.get(keyName)).toString();
+                map.put(k, valueConverter.convert(entry.get(valueName)));
+            }
+            return map;
+        });
+    }
+
+    private static Converter structConverter(Field field) {
+        Converter[] children = field.getChildren().stream().map(ColumnAccessor::converter).toArray(Converter[]::new);
+        return nullSafe(storage -> {
+            LinkedHashMap<String, Object> refinedStructMap = new LinkedHashMap<>();
+            int index = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) storage).entrySet()) {
+                refinedStructMap.put(entry.getKey().toString(), children[index++].convert(entry.getValue()));
+            }
+            return refinedStructMap;
+        });
+    }
+
+    private static Converter listConverter(Field field) {
+        Converter child = converter(field.getChildren().get(0));
+        return nullSafe(storage -> {
+            List<?> sourceList = (List<?>) storage;
+            ArrayList<Object> refined = new ArrayList<>(sourceList.size());
+            for (Object element : sourceList) {
+                refined.add(child.convert(element));
+            }
+            return refined;
+        });
+    }
+
+    private static Instant toInstant(long sinceEpoch, TimeUnit unit) {
+        return switch (unit) {
+            case MICROSECOND -> Instant.ofEpochSecond(
+                    Math.floorDiv(sinceEpoch, 1_000_000), Math.floorMod(sinceEpoch, 1_000_000) * 1_000);
+            case MILLISECOND -> Instant.ofEpochMilli(sinceEpoch);
+            case NANOSECOND -> Instant.ofEpochSecond(
+                    Math.floorDiv(sinceEpoch, 1_000_000_000), Math.floorMod(sinceEpoch, 1_000_000_000));
+            case SECOND -> Instant.ofEpochSecond(sinceEpoch);
+        };
+    }
+
+    private static Timestamp toTimestamp(long sinceEpoch, TimeUnit unit) {
+        return Timestamp.from(toInstant(sinceEpoch, unit));
+    }
+
+    private static Date toDate(LocalDate date, ZoneId zone) {
+        return new Date(date.atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Converts an instant to the requested java.time type, in the given zone.
+     *
+     * @return the converted value, or null if the type isn't a supported java.time type
+     */
+    private static Object convertInstant(Instant instant, ZoneId zone, Class<?> type) {
+        if (type == Instant.class) {
+            return instant;
+        } else if (type == LocalDateTime.class) {
+            return LocalDateTime.ofInstant(instant, zone);
+        } else if (type == OffsetDateTime.class) {
+            return OffsetDateTime.ofInstant(instant, zone);
+        } else if (type == LocalDate.class) {
+            return LocalDate.ofInstant(instant, zone);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.wherobots.db.jdbc.internal;
+
+import java.util.Locale;
+
+/**
+ * An immutable index of the columns of a result set by name, for label-based getters to find their column in
+ * constant time.
+ * <p>
+ * Names are looked up in an open-addressing hash table with linear probing, then, failing an exact match, in a second
+ * table of the names folded to lower case. Where several columns share a name, the first one wins. The last name
+ * looked up is remembered, as applications typically read the same column over and over with the same label.
+ * </p>
+ */
+public final class ColumnIndex {
+
+    private record Lookup(String name, int index) {}
+
+    private final String[] names;
+    private final String[] folded;
+    // Slots hold the index of a column plus one, 0 marking an empty slot.
+    private final int[] exactSlots;
+    private final int[] foldedSlots;
+    private final int mask;
+
+    private volatile Lookup last = new Lookup(null, -1);
+
+    public ColumnIndex(String[] names) {
+        this.names = names.clone();
+        this.folded = new String[names.length];
+        // At most half full, for probe sequences to stay short.
+        int capacity = Integer.highestOneBit(Math.max(1, names.length) * 2 - 1) << 1;
+        this.exactSlots = new int[capacity];
+        this.foldedSlots = new int[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) {
+                continue;
+            }
+            this.folded[i] = fold(names[i]);
+            insert(this.exactSlots, this.names, this.names[i], i);
+            insert(this.foldedSlots, this.folded, this.folded[i], i);
+        }
+    }
+
+    /**
+     * @return the 0-based index of the first column with the given name, matched exactly or else ignoring case, or -1
+     *         if there is none
+     */
+    public int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+
+        Lookup last = this.last;
+        if (name.equals(last.name())) {
+            return last.index();
+        }
+
+        int index = this.find(this.exactSlots, this.names, name);
+        if (index < 0) {
+            index = this.find(this.foldedSlots, this.folded, fold(name));
+        }
+        this.last = new Lookup(name, index);
+        return index;
+    }
+
+    private void insert(int[] slots, String[] keys, String key, int index) {
+        for (int slot = this.slot(key); ; slot = (slot + 1) & this.mask) {
+            if (slots[slot] == 0) {
+                slots[slot] = index + 1;
+                return;
+            }
+            if (keys[slots[slot] - 1].equals(key)) {
+                return;
+            }
+        }
+    }
+
+    private int find(int[] slots, String[] keys, String key) {
+        for (int slot = this.slot(key); slots[slot] != 0; slot = (slot + 1) & this.mask) {
+            int index = slots[slot] - 1;
+            if (keys[index].equals(key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(String key) {
+        int hash = key.hashCode();
+        // Spread the high bits down, as only the low ones pick the slot.
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -3,4 +3,12 @@ package com.wherobots.db.jdbc.internal;
 import com.wherobots.db.jdbc.models.StoreResult;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
 
-public record ExecutionResult(ArrowStreamReader result, Exception error, StoreResult storeResult) {}
+/**
+ * @param hasMore whether more pages of the query's results follow this one, to be retrieved with further requests
+ */
+public record ExecutionResult(ArrowStreamReader result, Exception error, StoreResult storeResult, boolean hasMore) {
+
+    public ExecutionResult(ArrowStreamReader result, Exception error, StoreResult storeResult) {
+        this(result, error, storeResult, false);
+    }
+}
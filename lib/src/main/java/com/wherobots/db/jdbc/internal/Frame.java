@@ -5,9 +5,25 @@ import com.wherobots.db.jdbc.models.Event;
 import com.wherobots.db.jdbc.serde.CborUtil;
 import com.wherobots.db.jdbc.serde.JsonUtil;
 
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
-public record Frame(String s, ByteBuffer bytes, Exception error) {
+/**
+ * An inbound message: a text message, a complete binary message, a binary message still being received (read from
+ * {@code stream}), or an error.
+ */
+public record Frame(String s, ByteBuffer bytes, InputStream stream, Exception error) {
+
+    public Frame(String s, ByteBuffer bytes, Exception error) {
+        this(s, bytes, null, error);
+    }
+
+    /**
+     * @return true if this frame carries a binary message, to be decoded off the dispatcher threads
+     */
+    public boolean isBinary() {
+        return bytes != null || stream != null;
+    }
 
     public Event get() throws Exception {
         if (s != null) {
@@ -15,9 +31,28 @@ public record Frame(String s, ByteBuffer bytes, Exception error) {
         }
 
         if (bytes != null) {
-            return CborUtil.deserialize(bytes.array(), new TypeReference<>() {});
+            return CborUtil.deserializeEvent(bytes);
+        }
+
+        if (stream != null) {
+            return this.readStream();
         }
 
         throw error;
     }
+
+    private Event readStream() throws Exception {
+        try {
+            Event event = CborUtil.deserializeEvent(stream);
+            if (!(event instanceof Event.ExecutionResultEvent ere && ere.results != null
+                    && ere.results.resultBytes != null)) {
+                // Nothing will read the rest of the message: let it go.
+                stream.close();
+            }
+            return event;
+        } catch (Exception e) {
+            stream.close();
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package com.wherobots.db.jdbc.internal;
+
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch source over results retrieved in pages, each sent by the session as a stream of its own.
+ * <p>
+ * The next page is only requested once all batches of the current one have been read, and at most one page is
+ * received at a time: however large the results, only one page of them is held by the driver.
+ * </p>
+ */
+public final class PagedBatchSource implements BatchSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagedBatchSource.class);
+
+    /**
+     * Requests the next page of results from the session.
+     */
+    @FunctionalInterface
+    public interface PageRequester {
+        /**
+         * @param fetchSize the maximum number of rows of the page
+         */
+        void request(int fetchSize);
+    }
+
+    private final PageRequester requester;
+    private final int timeoutSeconds;
+    private final BlockingQueue<ExecutionResult> pages = new ArrayBlockingQueue<>(1);
+    private final DictionaryProvider dictionaries = new PageDictionaries();
+
+    private volatile int fetchSize;
+    private volatile boolean closed = false;
+    private StreamBatchSource page;
+    private boolean hasMore;
+
+    /**
+     * @param first          the first page of results, owned by this source from now on
+     * @param hasMore        whether more pages follow the first one
+     * @param fetchSize      the maximum number of rows of the following pages
+     * @param requester      requests the next page, to be delivered with {@link #onPage(ExecutionResult)}
+     * @param timeoutSeconds how long to wait for each page
+     */
+    public PagedBatchSource(ArrowStreamReader first, boolean hasMore, int fetchSize, PageRequester requester,
+                            int timeoutSeconds) throws IOException {
+        this.page = new StreamBatchSource(first);
+        this.hasMore = hasMore;
+        this.fetchSize = fetchSize;
+        this.requester = requester;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Sets the maximum number of rows of the pages requested from now on.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Delivers the page last requested. Called from the connection's decoder threads, this never blocks: a page that
+     * wasn't asked for is released and dropped.
+     */
+    public void onPage(ExecutionResult result) {
+        if (!this.closed && this.pages.offer(result)) {
+            return;
+        }
+
+        logger.warn("Dropping unexpected page of results.");
+        release(result);
+    }
+
+    @Override
+    public VectorSchemaRoot root() {
+        return this.page.root();
+    }
+
+    @Override
+    public VectorSchemaRoot next() throws IOException {
+        while (true) {
+            VectorSchemaRoot batch = this.page.next();
+            if (batch != null) {
+                return batch;
+            }
+            if (!this.hasMore || !this.nextPage()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Requests the next page and waits for it, releasing the current page once it arrives.
+     *
+     * @return false if the session had no more results after all
+     */
+    private boolean nextPage() throws IOException {
+        this.requester.request(this.fetchSize);
+
+        ExecutionResult result;
+        try {
+            result = this.pages.poll(this.timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next page of results");
+        }
+
+        if (result == null) {
+            throw new IOException(
+                    String.format("No page of results received after %d second(s)", this.timeoutSeconds));
+        }
+        if (result.error() != null) {
+            throw new IOException("Failed to retrieve the next page of results", result.error());
+        }
+        if (result.result() == null) {
+            this.hasMore = false;
+            return false;
+        }
+
+        this.page.close();
+        this.page = new StreamBatchSource(result.result());
+        this.hasMore = result.hasMore();
+        return true;
+    }
+
+    @Override
+    public DictionaryProvider dictionaries() {
+        return this.dictionaries;
+    }
+
+    /**
+     * Releases the current page, and any page received since.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.page.close();
+
+        ExecutionResult result;
+        while ((result = this.pages.poll()) != null) {
+            release(result);
+        }
+    }
+
+    private static void release(ExecutionResult result) {
+        if (result.result() != null) {
+            try {
+                result.result().close();
+            } catch (IOException e) {
+                logger.warn("Failed to release page of results.", e);
+            }
+        }
+    }
+
+    /**
+     * The dictionaries of the current page, each page having dictionaries of its own.
+     */
+    private final class PageDictionaries implements DictionaryProvider {
+
+        @Override
+        public Dictionary lookup(long id) {
+            return PagedBatchSource.this.page.dictionaries().lookup(id);
+        }
+
+        @Override
+        public Set<Long> getDictionaryIds() {
+            return PagedBatchSource.this.page.dictionaries().getDictionaryIds();
+        }
+    }
+}
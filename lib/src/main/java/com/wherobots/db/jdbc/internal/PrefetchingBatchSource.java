@@ -0,0 +1,237 @@
+package com.wherobots.db.jdbc.internal;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A batch source reading ahead of its consumer: batches are decoded in the background, each into a root of its own,
+ * so that moving on to the next batch only swaps roots.
+ * <p>
+ * At most {@code capacity} batches are queued ahead of the consumer's current one, on top of the one being decoded.
+ * Decoding runs as a task on the given executor that stops whenever the queue is full, and is resubmitted once the
+ * consumer takes a batch: it never holds on to a thread of the executor while waiting for the consumer.
+ * </p>
+ * <p>
+ * Batches are moved out of the underlying source's root without copying their buffers. Dictionaries, however, are
+ * shared with that source and could be replaced while batches referring to them are still queued: dictionary-encoded
+ * columns are decoded as batches are moved, and this source doesn't support results with dictionary-encoded fields
+ * nested in other columns; see {@link Batches#hasNestedDictionaries(Schema)}.
+ * </p>
+ */
+public final class PrefetchingBatchSource implements BatchSource {
+
+    private final BatchSource source;
+    private final BufferAllocator allocator;
+    private final int capacity;
+    private final Executor executor;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = this.lock.newCondition();
+    private final Deque<VectorSchemaRoot> queue = new ArrayDeque<>();
+    private final DictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+
+    private VectorSchemaRoot current;
+    private boolean loading = false;
+    private boolean exhausted = false;
+    private boolean closed = false;
+    private IOException error;
+
+    /**
+     * @param reader    the reader to load batches from, owned by this source from now on
+     * @param allocator the allocator of the roots batches are moved to; must share its root with the reader's
+     * @param capacity  the maximum number of batches to read ahead
+     * @param executor  the executor to decode batches on
+     */
+    public PrefetchingBatchSource(ArrowReader reader, BufferAllocator allocator, int capacity, Executor executor)
+            throws IOException {
+        this(new StreamBatchSource(reader), allocator, capacity, executor);
+    }
+
+    /**
+     * @param source    the source to load batches from, owned by this source from now on; it must not block waiting
+     *                  on the executor
+     * @param allocator the allocator of the roots batches are moved to; must share its root with the source's
+     * @param capacity  the maximum number of batches to read ahead
+     * @param executor  the executor to decode batches on
+     */
+    public PrefetchingBatchSource(BatchSource source, BufferAllocator allocator, int capacity, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid prefetch capacity: " + capacity);
+        }
+
+        this.source = source;
+        this.allocator = allocator;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.current = VectorSchemaRoot.create(Batches.decode(source.root().getSchema(), source.dictionaries()),
+                allocator);
+
+        this.lock.lock();
+        try {
+            this.schedule();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public VectorSchemaRoot root() {
+        this.lock.lock();
+        try {
+            return this.current;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public VectorSchemaRoot next() throws IOException {
+        this.lock.lock();
+        try {
+            while (this.queue.isEmpty() && !this.exhausted && this.error == null && !this.closed) {
+                try {
+                    this.changed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the next batch");
+                }
+            }
+
+            VectorSchemaRoot batch = this.queue.poll();
+            if (batch == null) {
+                // Batches loaded before a failure are still handed out first.
+                if (this.error != null) {
+                    throw this.error;
+                }
+                return null;
+            }
+
+            this.current.close();
+            this.current = batch;
+            this.schedule();
+            return batch;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public DictionaryProvider dictionaries() {
+        // Dictionary-encoded columns are decoded.
+        return this.dictionaries;
+    }
+
+    /**
+     * Waits for the decoding task to stop, then releases all batches and the underlying source.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+            while (this.loading) {
+                this.changed.awaitUninterruptibly();
+            }
+
+            this.queue.forEach(VectorSchemaRoot::close);
+            this.queue.clear();
+            this.current.close();
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.source.close();
+    }
+
+    /**
+     * Submits the decoding task, unless it is already running or there is nothing left for it to do. Must be called
+     * with the lock held.
+     */
+    private void schedule() {
+        if (this.loading || this.exhausted || this.closed || this.error != null || this.queue.size() >= this.capacity) {
+            return;
+        }
+
+        this.loading = true;
+        try {
+            this.executor.execute(this::load);
+        } catch (RejectedExecutionException e) {
+            this.loading = false;
+            this.error = new IOException("Failed to schedule the decoding of the next batch", e);
+            this.changed.signalAll();
+        }
+    }
+
+    private void load() {
+        try {
+            while (this.hasRoom()) {
+                VectorSchemaRoot loaded = this.source.next();
+                if (loaded == null) {
+                    this.lock.lock();
+                    try {
+                        this.exhausted = true;
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    return;
+                }
+
+                VectorSchemaRoot batch = Batches.detach(loaded, this.source.dictionaries(), this.allocator);
+                this.lock.lock();
+                try {
+                    if (this.closed) {
+                        batch.close();
+                    } else {
+                        this.queue.add(batch);
+                        this.changed.signalAll();
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        } catch (Exception e) {
+            this.lock.lock();
+            try {
+                this.error = e instanceof IOException io ? io : new IOException("Failed to decode the next batch", e);
+            } finally {
+                this.lock.unlock();
+            }
+        } finally {
+            this.lock.lock();
+            try {
+                this.loading = false;
+                this.changed.signalAll();
+                // The consumer may have taken a batch after the last check for room.
+                this.schedule();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private boolean hasRoom() {
+        this.lock.lock();
+        try {
+            return !this.closed && this.queue.size() < this.capacity;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
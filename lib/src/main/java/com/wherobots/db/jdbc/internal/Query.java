@@ -7,17 +7,28 @@ public class Query {
     private final String executionId;
     private final String sql;
     private final WherobotsStatement statement;
-    private QueryState status;
+    private final boolean resultsRequested;
+    private volatile QueryState status;
 
     public Query(
             String executionId,
             String sql,
             WherobotsStatement statement,
             QueryState status) {
+        this(executionId, sql, statement, status, false);
+    }
+
+    public Query(
+            String executionId,
+            String sql,
+            WherobotsStatement statement,
+            QueryState status,
+            boolean resultsRequested) {
         this.executionId = executionId;
         this.sql = sql;
         this.statement = statement;
         this.status = status;
+        this.resultsRequested = resultsRequested;
     }
 
     public String executionId() {
@@ -32,6 +43,14 @@ public class Query {
         return statement;
     }
 
+    /**
+     * @return true if the results were requested along with the query's execution, and will be sent by the session
+     *         without a separate retrieval request
+     */
+    public boolean resultsRequested() {
+        return resultsRequested;
+    }
+
     public QueryState status() {
         return status;
     }
@@ -0,0 +1,151 @@
+package com.wherobots.db.jdbc.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Driver-wide executors shared by all connections.
+ * <p>
+ * Connections don't own threads of their own: inbound frames of every connection are handled on a single fixed-size
+ * dispatcher pool, query results are decoded on a separate decoder pool so that a large result never holds up the
+ * dispatch of other events, and WebSocket keep-alives of every session are driven by a single heartbeat thread. Result
+ * sets reading ahead do so on a prefetch pool of their own, as reading ahead waits on results still being received.
+ * The pools are created lazily on first use and live for the lifetime of the JVM; their threads are daemon threads.
+ * </p>
+ */
+public final class SharedExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedExecutors.class);
+
+    public static final int DEFAULT_DISPATCHER_THREADS = Math.max(2, java.lang.Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_DECODER_THREADS = Math.max(2, java.lang.Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService dispatcher;
+    private static ExecutorService decoder;
+    private static ExecutorService prefetcher;
+    private static ExecutorService virtual;
+    private static ForkJoinPool decompression;
+    private static ScheduledExecutorService heartbeat;
+
+    private SharedExecutors() {}
+
+    /**
+     * Returns the frame dispatcher pool, creating it with the given number of threads on first use. The pool is
+     * shared by all connections, so only the size requested by the first connection is honored.
+     *
+     * @param threads the number of dispatcher threads to create the pool with
+     * @return the shared dispatcher pool
+     */
+    public static synchronized ExecutorService dispatcher(int threads) {
+        if (dispatcher == null) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Invalid dispatcher thread count: " + threads);
+            }
+            logger.info("Starting shared frame dispatcher with {} thread(s).", threads);
+            dispatcher = Executors.newFixedThreadPool(threads, daemonThreadFactory("wherobots-dispatcher"));
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Returns the result decoder pool, creating it with the given number of threads on first use. Like the
+     * dispatcher, the pool is shared by all connections and only the size requested by the first one is honored.
+     *
+     * @param threads the number of decoder threads to create the pool with
+     * @return the shared decoder pool
+     */
+    public static synchronized ExecutorService decoder(int threads) {
+        if (decoder == null) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Invalid decoder thread count: " + threads);
+            }
+            logger.info("Starting shared result decoder with {} thread(s).", threads);
+            decoder = Executors.newFixedThreadPool(threads, daemonThreadFactory("wherobots-decoder"));
+        }
+        return decoder;
+    }
+
+    /**
+     * Returns the pool reading result batches ahead of the application. Reading ahead blocks until the bytes of the
+     * next batch are received, so it never runs on the decoder pool, whose threads must stay free to decode the
+     * results of other queries: the pool grows with the number of result sets reading ahead at once, and its idle
+     * threads expire after a minute.
+     *
+     * @return the shared prefetch pool
+     */
+    public static synchronized ExecutorService prefetcher() {
+        if (prefetcher == null) {
+            prefetcher = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    daemonThreadFactory("wherobots-prefetch"));
+        }
+        return prefetcher;
+    }
+
+    /**
+     * Returns the executor running each task on its own virtual thread, for connections that opted into virtual
+     * threads. It replaces the dispatcher, decoder and prefetch pools for those connections.
+     *
+     * @return the shared virtual thread executor
+     * @throws UnsupportedOperationException if virtual threads are not available in this Java runtime
+     * @see VirtualThreads#isSupported()
+     */
+    public static synchronized ExecutorService virtual() {
+        if (virtual == null) {
+            virtual = VirtualThreads.newExecutor("wherobots-virtual");
+        }
+        return virtual;
+    }
+
+    /**
+     * Returns the fork-join pool decompressing the buffers of result batches in parallel, sized to the number of
+     * available processors.
+     */
+    public static synchronized ForkJoinPool decompression() {
+        if (decompression == null) {
+            AtomicInteger counter = new AtomicInteger();
+            decompression = new ForkJoinPool(java.lang.Runtime.getRuntime().availableProcessors(), pool -> {
+                // Fork-join worker threads are daemon threads.
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(String.format("wherobots-decompression-%d", counter.incrementAndGet()));
+                return thread;
+            }, null, false);
+        }
+        return decompression;
+    }
+
+    /**
+     * Returns the single-threaded scheduler driving the keep-alive pings of all sessions.
+     */
+    public static synchronized ScheduledExecutorService heartbeat() {
+        if (heartbeat == null) {
+            ScheduledThreadPoolExecutor executor =
+                    new ScheduledThreadPoolExecutor(1, daemonThreadFactory("wherobots-heartbeat"));
+            // Sessions cancel their heartbeat when they close; don't keep the cancelled tasks around.
+            executor.setRemoveOnCancelPolicy(true);
+            heartbeat = executor;
+        }
+        return heartbeat;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.setName(String.format("%s-%d", name, counter.incrementAndGet()));
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.wherobots.db.jdbc.internal;
+
+import com.wherobots.db.jdbc.models.SpillStats;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+
+import java.io.IOException;
+
+/**
+ * A batch source handing out the batches of a {@link BatchStore}, in order or positioned on any row.
+ * <p>
+ * The offset of the first row of each batch is indexed, for {@link #seek(int)} to find the batch holding a row with a
+ * binary search over the batches.
+ * </p>
+ */
+public final class StoredBatchSource implements BatchSource {
+
+    private final BatchStore store;
+    private final VectorSchemaRoot empty;
+    private final DictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+    // The offset of the first row of each batch, followed by the total number of rows.
+    private final int[] offsets;
+
+    private VectorSchemaRoot current;
+    private int index = -1;
+
+    /**
+     * @param store     the batches to hand out, owned by this source from now on
+     * @param allocator the allocator of the empty root handed out before the first batch
+     */
+    public StoredBatchSource(BatchStore store, BufferAllocator allocator) {
+        this.store = store;
+        this.empty = VectorSchemaRoot.create(store.schema(), allocator);
+        this.current = this.empty;
+
+        this.offsets = new int[store.batchCount() + 1];
+        for (int i = 0; i < store.batchCount(); i++) {
+            this.offsets[i + 1] = Math.addExact(this.offsets[i], store.rowCount(i));
+        }
+    }
+
+    @Override
+    public VectorSchemaRoot root() {
+        return this.current;
+    }
+
+    @Override
+    public VectorSchemaRoot next() throws IOException {
+        if (this.index + 1 >= this.store.batchCount()) {
+            this.index = this.store.batchCount();
+            return null;
+        }
+
+        this.current = this.store.load(++this.index);
+        return this.current;
+    }
+
+    /**
+     * @return the total number of rows of the stored batches
+     */
+    public int rowCount() {
+        return this.offsets[this.offsets.length - 1];
+    }
+
+    /**
+     * @return the index of the current batch, -1 before the first batch and the number of batches after the last
+     */
+    public int batchIndex() {
+        return this.index;
+    }
+
+    /**
+     * Positions this source on the batch holding the given row, loading it unless it is the current batch. Following
+     * calls to {@link #next()} carry on from that batch.
+     * <p>
+     * Rows before the first one leave this source before its first batch, and rows past the last one after its last
+     * batch, both on an empty root.
+     * </p>
+     *
+     * @param row the 0-based index of the row among all rows
+     * @return the index of the row within the batch now in {@link #root()}
+     */
+    public int seek(int row) throws IOException {
+        int batchCount = this.store.batchCount();
+        if (row < 0) {
+            this.index = -1;
+            this.current = this.empty;
+            return -1;
+        }
+        if (row >= this.rowCount()) {
+            this.index = batchCount;
+            this.current = this.empty;
+            return 0;
+        }
+
+        if (this.index < 0 || this.index >= batchCount
+                || row < this.offsets[this.index] || row >= this.offsets[this.index + 1]) {
+            // The last batch starting at or before the row, which skips over any empty batches starting there too.
+            int low = 0;
+            int high = batchCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (this.offsets[mid] <= row) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            this.current = this.store.load(low);
+            this.index = low;
+        }
+        return row - this.offsets[this.index];
+    }
+
+    @Override
+    public DictionaryProvider dictionaries() {
+        // Dictionary-encoded columns are decoded as batches are stored.
+        return this.dictionaries;
+    }
+
+    @Override
+    public SpillStats spillStats() {
+        return this.store.spillStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.empty.close();
+        this.store.close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.wherobots.db.jdbc.internal;
+
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowReader;
+
+import java.io.IOException;
+
+/**
+ * A batch source loading each batch from the reader when asked for it, into the reader's own root.
+ */
+public final class StreamBatchSource implements BatchSource {
+
+    private final ArrowReader reader;
+    private final VectorSchemaRoot root;
+
+    public StreamBatchSource(ArrowReader reader) throws IOException {
+        this.reader = reader;
+        this.root = reader.getVectorSchemaRoot();
+    }
+
+    @Override
+    public VectorSchemaRoot root() {
+        return this.root;
+    }
+
+    @Override
+    public VectorSchemaRoot next() throws IOException {
+        return this.reader.loadNextBatch() ? this.root : null;
+    }
+
+    @Override
+    public DictionaryProvider dictionaries() {
+        return this.reader;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.wherobots.db.jdbc.internal;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, when the Java runtime supports them.
+ * <p>
+ * This is the Java 17 implementation, under which virtual threads are never available. The driver is packaged as a
+ * multi-release jar that also carries a Java 21 implementation of this class, picked up automatically by Java 21+
+ * runtimes.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if virtual threads are available in this Java runtime
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread.
+     *
+     * @param name the name prefix of the virtual threads
+     * @return the new executor
+     * @throws UnsupportedOperationException if virtual threads are not available in this Java runtime
+     */
+    public static ExecutorService newExecutor(String name) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+}
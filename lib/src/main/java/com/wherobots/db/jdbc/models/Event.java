@@ -1,5 +1,6 @@
 package com.wherobots.db.jdbc.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
@@ -8,6 +9,7 @@ import com.wherobots.db.DataCompression;
 import com.wherobots.db.DataFormat;
 import com.wherobots.db.GeometryRepresentation;
 
+import java.io.InputStream;
 import java.util.List;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "kind", visible = true)
@@ -46,10 +48,18 @@ public class Event {
 
     @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
     public static class Results {
-        public byte[] resultBytes;
+        // Set by CborUtil as a stream over the received message, rather than mapped (and copied) by Jackson.
+        @JsonIgnore
+        public InputStream resultBytes;
+        // Size of the result bytes, or -1 if not known upfront.
+        @JsonIgnore
+        public long resultSize = -1;
         public DataCompression compression;
         public DataFormat format;
         public GeometryRepresentation geometry;
         public List<String> geoColumns;
+        // Whether more pages of results follow, when they were requested with a fetch size. Sent ahead of the result
+        // bytes, as fields following them may not be parsed.
+        public Boolean hasMore;
     }
 }
@@ -3,6 +3,9 @@ package com.wherobots.db.jdbc.models;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.wherobots.db.DataCompression;
+import com.wherobots.db.DataFormat;
+import com.wherobots.db.GeometryRepresentation;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
@@ -12,6 +15,16 @@ public class ExecuteSqlRequest {
     public String executionId;
     public String statement;
     public Store store;
+    // Maximum number of rows of the results, past which the session may stop computing and sending them.
+    public Integer maxRows;
+
+    // Optional results retrieval options. When given, the session sends the results as soon as the query succeeds,
+    // without waiting for a separate retrieve_results request.
+    public DataFormat format;
+    public DataCompression compression;
+    public GeometryRepresentation geometry;
+    public DataCompression bufferCompression;
+    public Integer fetchSize;
 
     public ExecuteSqlRequest(String executionId, String statement) {
         this(executionId, statement, null);
@@ -22,4 +35,4 @@ public class ExecuteSqlRequest {
         this.statement = statement;
         this.store = store;
     }
-}
\ No newline at end of file
+}
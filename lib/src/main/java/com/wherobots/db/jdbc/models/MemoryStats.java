@@ -0,0 +1,20 @@
+package com.wherobots.db.jdbc.models;
+
+import org.apache.arrow.memory.BufferAllocator;
+
+/**
+ * Memory usage of the Arrow buffers holding query results, for a connection or a statement.
+ *
+ * @param allocated the number of bytes currently allocated
+ * @param peak the highest number of bytes allocated at once so far
+ * @param limit the maximum number of bytes that may be allocated, or {@link Long#MAX_VALUE} if unbounded
+ */
+public record MemoryStats(long allocated, long peak, long limit) {
+
+    public static MemoryStats of(BufferAllocator allocator) {
+        return new MemoryStats(
+                allocator.getAllocatedMemory(),
+                allocator.getPeakMemoryAllocation(),
+                allocator.getLimit());
+    }
+}
@@ -18,6 +18,11 @@ public class RetrieveResultsRequest {
     public DataFormat format;
     public DataCompression compression;
     public GeometryRepresentation geometry;
+    // Arrow IPC codec compressing each buffer of the result batches, instead of the stream as a whole.
+    public DataCompression bufferCompression;
+    // Maximum number of rows to send at once. The rest of the results are sent in further pages, each on its own
+    // retrieve_results request, for as long as the previous page reported having more.
+    public Integer fetchSize;
 
     public RetrieveResultsRequest(String executionId, DataFormat format, DataCompression compression, GeometryRepresentation geometry) {
         this.executionId = executionId;
@@ -25,4 +30,17 @@ public class RetrieveResultsRequest {
         this.compression = compression;
         this.geometry = geometry;
     }
+
+    public RetrieveResultsRequest(String executionId, DataFormat format, DataCompression compression,
+                                  GeometryRepresentation geometry, DataCompression bufferCompression) {
+        this(executionId, format, compression, geometry);
+        this.bufferCompression = bufferCompression;
+    }
+
+    public RetrieveResultsRequest(String executionId, DataFormat format, DataCompression compression,
+                                  GeometryRepresentation geometry, DataCompression bufferCompression,
+                                  Integer fetchSize) {
+        this(executionId, format, compression, geometry, bufferCompression);
+        this.fetchSize = fetchSize;
+    }
 }
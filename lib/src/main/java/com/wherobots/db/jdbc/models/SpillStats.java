@@ -0,0 +1,15 @@
+package com.wherobots.db.jdbc.models;
+
+import java.time.Duration;
+
+/**
+ * Statistics about the results of a query spilled to local disk.
+ *
+ * @param batches the number of record batches spilled
+ * @param bytes the size of the spill file in bytes
+ * @param time the time spent writing the spill file
+ */
+public record SpillStats(int batches, long bytes, Duration time) {
+
+    public static final SpillStats NONE = new SpillStats(0, 0, Duration.ZERO);
+}
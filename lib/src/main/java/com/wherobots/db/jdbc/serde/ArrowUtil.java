@@ -1,22 +1,36 @@
 package com.wherobots.db.jdbc.serde;
 
 import com.wherobots.db.DataCompression;
+import com.wherobots.db.jdbc.internal.SharedExecutors;
 import org.apache.arrow.compression.CommonsCompressionFactory;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class ArrowUtil {
     private static final BufferAllocator ALLOCATOR = new RootAllocator();
 
-    public static ArrowStreamReader readFrom(byte[] bytes, DataCompression compression) throws IOException {
-        return new ArrowStreamReader(
-                compression.decompressor.get(new ByteArrayInputStream(bytes)),
-                ALLOCATOR,
-                new CommonsCompressionFactory());
+    // Minimum compressed body size of a record batch to spread the decompression of its buffers over several threads.
+    private static final long MIN_PARALLEL_DECOMPRESSION_BYTES = 256 * 1024;
+
+    /**
+     * @return the driver-wide root allocator, from which the allocators of connections and statements descend
+     */
+    public static BufferAllocator allocator() {
+        return ALLOCATOR;
+    }
+
+    public static ArrowStreamReader readFrom(InputStream bytes, DataCompression compression,
+                                             BufferAllocator allocator) throws IOException {
+        return new ParallelDecompressingStreamReader(
+                compression.decompressor.get(bytes),
+                allocator,
+                new CommonsCompressionFactory(),
+                SharedExecutors.decompression(),
+                MIN_PARALLEL_DECOMPRESSION_BYTES);
 
     }
 }
@@ -0,0 +1,75 @@
+package com.wherobots.db.jdbc.serde;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An {@link InputStream} reading from a {@link ByteBuffer}, heap or direct, without copying it.
+ * <p>
+ * The stream reads from its own view of the buffer, so it doesn't move the position of the buffer it was given.
+ * Beyond the usual stream methods, {@link #slice(int)} hands out read-only views of the upcoming bytes, letting
+ * parsers extract large payloads without materializing them.
+ * </p>
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    @Override
+    public int read() {
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+        return this.buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int n = Math.min(len, this.buffer.remaining());
+        this.buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+        this.buffer.position(this.buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+
+    /**
+     * Returns a read-only view of the next {@code length} bytes of the stream, and moves past them.
+     *
+     * @param length the number of bytes to slice
+     * @return a read-only buffer sharing its content with the underlying buffer
+     * @throws EOFException if fewer than {@code length} bytes remain
+     */
+    public ByteBuffer slice(int length) throws EOFException {
+        if (length < 0 || length > this.buffer.remaining()) {
+            throw new EOFException(String.format(
+                    "Cannot slice %d bytes with only %d remaining", length, this.buffer.remaining()));
+        }
+
+        ByteBuffer slice = this.buffer.slice(this.buffer.position(), length).asReadOnlyBuffer();
+        this.buffer.position(this.buffer.position() + length);
+        return slice;
+    }
+}
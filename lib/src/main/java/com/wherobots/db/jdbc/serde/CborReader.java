@@ -0,0 +1,456 @@
+package com.wherobots.db.jdbc.serde;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A minimal CBOR (RFC 8949) decoder producing plain Java values: maps (with string keys), lists, strings, longs,
+ * floating point numbers, booleans and nulls. Tags are skipped.
+ * <p>
+ * Byte strings are returned as {@link ByteBuffer}s. When reading from a {@link ByteBufferInputStream}, they are
+ * read-only slices of the underlying buffer rather than copies, so decoding a message never duplicates its binary
+ * payloads.
+ * </p>
+ * <p>
+ * For streaming use, maps can also be walked entry by entry with {@link #readMapStart()} and {@link #readKey(boolean)},
+ * and a byte string can be opened as a stream over its content with {@link #readByteStream()} instead of being read
+ * whole.
+ * </p>
+ */
+final class CborReader {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+
+    private static final int INDEFINITE = 31;
+    private static final int BREAK_BYTE = 0xff;
+
+    // Sentinel returned when reading the "break" stop code of indefinite-length items.
+    private static final Object BREAK = new Object();
+
+    // Don't trust declared container sizes for pre-allocation.
+    private static final int MAX_INITIAL_CAPACITY = 64;
+
+    private final InputStream in;
+
+    // Initial byte read ahead by peekMajor(), or -1.
+    private int peeked = -1;
+
+    CborReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * The content of a byte string, opened as a stream.
+     *
+     * @param stream the content of the byte string
+     * @param length its length in bytes, or -1 if not known upfront
+     */
+    record ByteStream(InputStream stream, long length) {}
+
+    /**
+     * Reads the next complete data item.
+     */
+    Object read() throws IOException {
+        Object value = this.readItem();
+        if (value == BREAK) {
+            throw new IOException("Unexpected CBOR break stop code");
+        }
+        return value;
+    }
+
+    /**
+     * Reads the header of a map.
+     *
+     * @return the number of entries in the map, or -1 for an indefinite-length map
+     */
+    long readMapStart() throws IOException {
+        int initial = this.readUnsignedByte();
+        if (initial >>> 5 != MAJOR_MAP) {
+            throw new IOException("Expected a CBOR map, got major type " + (initial >>> 5));
+        }
+        int info = initial & 0x1f;
+        return info == INDEFINITE ? -1 : this.readArgument(info);
+    }
+
+    /**
+     * Reads the next key of a map whose header was read with {@link #readMapStart()}.
+     *
+     * @param indefinite whether the map is of indefinite length
+     * @return the key, or null at the end of an indefinite-length map
+     */
+    String readKey(boolean indefinite) throws IOException {
+        Object key = this.readItem();
+        if (key == BREAK) {
+            if (indefinite) {
+                return null;
+            }
+            throw new IOException("Unexpected CBOR break stop code");
+        }
+        return String.valueOf(key);
+    }
+
+    /**
+     * Returns the major type of the next data item, without consuming it.
+     */
+    int peekMajor() throws IOException {
+        if (this.peeked < 0) {
+            this.peeked = this.readUnsignedByte();
+        }
+        return this.peeked >>> 5;
+    }
+
+    boolean nextIsMap() throws IOException {
+        return this.peekMajor() == MAJOR_MAP;
+    }
+
+    boolean nextIsBytes() throws IOException {
+        return this.peekMajor() == MAJOR_BYTES;
+    }
+
+    /**
+     * Opens the next data item, which must be a byte string, as a stream over its content.
+     * <p>
+     * Over a {@link ByteBufferInputStream}, the returned stream reads from slices of the underlying buffer and this
+     * reader can keep going past the byte string. Over any other source, the returned stream reads straight from the
+     * source: it must be consumed (or closed) before anything else is read, and closing it closes the source.
+     * </p>
+     */
+    ByteStream readByteStream() throws IOException {
+        int initial = this.readUnsignedByte();
+        if (initial >>> 5 != MAJOR_BYTES) {
+            throw new IOException("Expected a CBOR byte string, got major type " + (initial >>> 5));
+        }
+
+        int info = initial & 0x1f;
+        if (info != INDEFINITE) {
+            long length = this.readArgument(info);
+            if (this.in instanceof ByteBufferInputStream buffer) {
+                return new ByteStream(new ByteBufferInputStream(buffer.slice(this.toLength(length))), length);
+            }
+            return new ByteStream(new BoundedInputStream(this.in, length), length);
+        }
+
+        if (!(this.in instanceof ByteBufferInputStream buffer)) {
+            return new ByteStream(new ChunkedInputStream(), -1);
+        }
+
+        List<InputStream> chunks = new ArrayList<>();
+        long total = 0;
+        for (int chunk = this.readUnsignedByte(); chunk != BREAK_BYTE; chunk = this.readUnsignedByte()) {
+            this.checkChunk(chunk, MAJOR_BYTES);
+            ByteBuffer slice = buffer.slice(this.readLength(chunk & 0x1f));
+            total += slice.remaining();
+            chunks.add(new ByteBufferInputStream(slice));
+        }
+        return new ByteStream(new SequenceInputStream(Collections.enumeration(chunks)), total);
+    }
+
+    private Object readItem() throws IOException {
+        int initial = this.readUnsignedByte();
+        int major = initial >>> 5;
+        int info = initial & 0x1f;
+
+        return switch (major) {
+            case MAJOR_UNSIGNED -> this.readArgument(info);
+            case MAJOR_NEGATIVE -> -1 - this.readArgument(info);
+            case MAJOR_BYTES -> this.readBytes(info);
+            case MAJOR_TEXT -> this.readText(info);
+            case MAJOR_ARRAY -> this.readArray(info);
+            case MAJOR_MAP -> this.readMap(info);
+            case MAJOR_TAG -> {
+                this.readArgument(info);
+                yield this.read();
+            }
+            default -> this.readSimple(info);
+        };
+    }
+
+    private long readArgument(int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+
+        long value = switch (info) {
+            case 24 -> this.readUnsignedByte();
+            case 25 -> this.readBigEndian(2);
+            case 26 -> this.readBigEndian(4);
+            case 27 -> this.readBigEndian(8);
+            default -> throw new IOException("Invalid CBOR additional information: " + info);
+        };
+        if (value < 0) {
+            throw new IOException("CBOR integer out of range");
+        }
+        return value;
+    }
+
+    private int readLength(int info) throws IOException {
+        return this.toLength(this.readArgument(info));
+    }
+
+    private int toLength(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("CBOR item too large: " + length);
+        }
+        return (int) length;
+    }
+
+    private ByteBuffer readBytes(int info) throws IOException {
+        if (info != INDEFINITE) {
+            return this.readByteString(this.readLength(info));
+        }
+
+        // Indefinite-length byte strings are a sequence of definite-length chunks; this form is not used for large
+        // payloads in practice, so just concatenate them.
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int total = 0;
+        for (int initial = this.readUnsignedByte(); initial != BREAK_BYTE; initial = this.readUnsignedByte()) {
+            this.checkChunk(initial, MAJOR_BYTES);
+            ByteBuffer chunk = this.readByteString(this.readLength(initial & 0x1f));
+            total = Math.addExact(total, chunk.remaining());
+            chunks.add(chunk);
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(total);
+        chunks.forEach(bytes::put);
+        return bytes.flip();
+    }
+
+    private ByteBuffer readByteString(int length) throws IOException {
+        if (this.in instanceof ByteBufferInputStream buffer) {
+            return buffer.slice(length);
+        }
+
+        byte[] bytes = this.in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated CBOR byte string");
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private String readText(int info) throws IOException {
+        if (info != INDEFINITE) {
+            return StandardCharsets.UTF_8.decode(this.readByteString(this.readLength(info))).toString();
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int initial = this.readUnsignedByte(); initial != BREAK_BYTE; initial = this.readUnsignedByte()) {
+            this.checkChunk(initial, MAJOR_TEXT);
+            text.append(StandardCharsets.UTF_8.decode(this.readByteString(this.readLength(initial & 0x1f))));
+        }
+        return text.toString();
+    }
+
+    private void checkChunk(int initial, int major) throws IOException {
+        if (initial >>> 5 != major || (initial & 0x1f) == INDEFINITE) {
+            throw new IOException("Invalid chunk in indefinite-length CBOR string");
+        }
+    }
+
+    private List<Object> readArray(int info) throws IOException {
+        if (info == INDEFINITE) {
+            List<Object> list = new ArrayList<>();
+            for (Object item = this.readItem(); item != BREAK; item = this.readItem()) {
+                list.add(item);
+            }
+            return list;
+        }
+
+        int size = this.readLength(info);
+        List<Object> list = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            list.add(this.read());
+        }
+        return list;
+    }
+
+    private Map<String, Object> readMap(int info) throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        if (info == INDEFINITE) {
+            for (Object key = this.readItem(); key != BREAK; key = this.readItem()) {
+                map.put(String.valueOf(key), this.read());
+            }
+            return map;
+        }
+
+        int size = this.readLength(info);
+        for (int i = 0; i < size; i++) {
+            String key = String.valueOf(this.read());
+            map.put(key, this.read());
+        }
+        return map;
+    }
+
+    private Object readSimple(int info) throws IOException {
+        return switch (info) {
+            case 20 -> false;
+            case 21 -> true;
+            case 22, 23 -> null;
+            case 25 -> halfToFloat((int) this.readBigEndian(2));
+            case 26 -> Float.intBitsToFloat((int) this.readBigEndian(4));
+            case 27 -> Double.longBitsToDouble(this.readBigEndian(8));
+            case INDEFINITE -> BREAK;
+            default -> throw new IOException("Unsupported CBOR simple value: " + info);
+        };
+    }
+
+    private static float halfToFloat(int half) {
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        float value;
+        if (exponent == 0) {
+            value = Math.scalb((float) mantissa, -24);
+        } else if (exponent == 0x1f) {
+            value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        } else {
+            value = Math.scalb((float) (mantissa | 0x400), exponent - 25);
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    private int readUnsignedByte() throws IOException {
+        if (this.peeked >= 0) {
+            int b = this.peeked;
+            this.peeked = -1;
+            return b;
+        }
+
+        int b = this.in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated CBOR data");
+        }
+        return b;
+    }
+
+    private long readBigEndian(int bytes) throws IOException {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = (value << 8) | this.readUnsignedByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads the content of a definite-length byte string straight from the source.
+     */
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining == 0) {
+                return -1;
+            }
+            int b = this.in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated CBOR byte string");
+            }
+            this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (this.remaining == 0) {
+                return -1;
+            }
+            int n = this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if (n < 0) {
+                throw new EOFException("Truncated CBOR byte string");
+            }
+            this.remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(this.remaining, this.in.available());
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Reads the content of an indefinite-length byte string straight from the source, one chunk at a time.
+     */
+    private final class ChunkedInputStream extends InputStream {
+        private long remaining = 0;
+        private boolean done = false;
+
+        private boolean advance() throws IOException {
+            while (this.remaining == 0 && !this.done) {
+                int initial = CborReader.this.readUnsignedByte();
+                if (initial == BREAK_BYTE) {
+                    this.done = true;
+                } else {
+                    CborReader.this.checkChunk(initial, MAJOR_BYTES);
+                    this.remaining = CborReader.this.readArgument(initial & 0x1f);
+                }
+            }
+            return !this.done;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!this.advance()) {
+                return -1;
+            }
+            int b = CborReader.this.in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated CBOR byte string");
+            }
+            this.remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.advance()) {
+                return -1;
+            }
+            int n = CborReader.this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if (n < 0) {
+                throw new EOFException("Truncated CBOR byte string");
+            }
+            this.remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            CborReader.this.in.close();
+        }
+    }
+}
@@ -1,19 +1,145 @@
 package com.wherobots.db.jdbc.serde;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wherobots.db.jdbc.models.Event;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class CborUtil {
     private static final ObjectMapper MAPPER = new ObjectMapper(new CBORFactory())
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
-    public static <T> T deserialize(byte[] bytes, TypeReference<T> type) throws IllegalArgumentException {
+    private static final String KIND = "kind";
+    private static final String EXECUTION_ID = "execution_id";
+    private static final String COMPRESSION = "compression";
+    private static final String RESULTS = "results";
+    private static final String RESULT_BYTES = "result_bytes";
+
+    private CborUtil() {}
+
+    /**
+     * Deserializes a CBOR-encoded event straight from the given buffer, heap or direct, without copying it.
+     * <p>
+     * The result bytes of an execution result event are read from a slice of the buffer: they remain valid for as
+     * long as the buffer's content does.
+     * </p>
+     */
+    public static Event deserializeEvent(ByteBuffer bytes) throws MalformedEventException {
+        return deserializeEvent(new ByteBufferInputStream(bytes));
+    }
+
+    /**
+     * Deserializes a CBOR-encoded event from the given stream, without ever materializing its result bytes.
+     * <p>
+     * The event's fields are parsed as they come; the result bytes of an execution result event are exposed as a
+     * stream over their content, to be fed directly into the decompressor. Unless the source is a
+     * {@link ByteBufferInputStream}, that stream reads from the source itself, and parsing stops there: fields
+     * encoded after the result bytes are not read, and the caller owns the source through the result stream. This
+     * requires the event's kind, execution id and results compression, which the result bytes can't be read without,
+     * to be encoded ahead of them: otherwise, the result bytes are read into memory, and parsing goes on past them.
+     * </p>
+     *
+     * @throws MalformedEventException if the event can't be decoded, with its execution id if it was read already
+     */
+    public static Event deserializeEvent(InputStream in) throws MalformedEventException {
+        Map<String, Object> fields = new LinkedHashMap<>();
         try {
-            return MAPPER.readValue(bytes, type);
+            CborReader reader = new CborReader(in);
+            // Byte strings of a buffer are read from slices of it, leaving the reader free to go on past them.
+            boolean sliced = in instanceof ByteBufferInputStream;
+            CborReader.ByteStream resultBytes = null;
+
+            long size = reader.readMapStart();
+            for (long i = 0; size < 0 || i < size; i++) {
+                String key = reader.readKey(size < 0);
+                if (key == null) {
+                    break;
+                }
+
+                if (!RESULTS.equals(key) || !reader.nextIsMap()) {
+                    fields.put(key, reader.read());
+                    continue;
+                }
+
+                Map<String, Object> results = new LinkedHashMap<>();
+                fields.put(RESULTS, results);
+                resultBytes = readResults(reader, fields, results, sliced);
+                if (resultBytes != null && !sliced && !(resultBytes.stream() instanceof ByteBufferInputStream)) {
+                    // The rest of the source is the result bytes' stream.
+                    break;
+                }
+            }
+
+            Event event = MAPPER.convertValue(fields, Event.class);
+            if (resultBytes != null) {
+                if (event instanceof Event.ExecutionResultEvent ere && ere.results != null) {
+                    ere.results.resultBytes = resultBytes.stream();
+                    ere.results.resultSize = resultBytes.length();
+                } else {
+                    resultBytes.stream().close();
+                }
+            }
+            return event;
         } catch (Exception e) {
-            throw new IllegalArgumentException(e);
+            throw new MalformedEventException(
+                    fields.get(EXECUTION_ID) instanceof String executionId ? executionId : null, e);
+        }
+    }
+
+    /**
+     * @return true if the fields needed to read the result bytes were read already, as those after them can't be read
+     * when streaming
+     */
+    private static boolean hasHeader(Map<String, Object> fields, Map<String, Object> results) {
+        return fields.get(KIND) != null && fields.get(EXECUTION_ID) != null && results.get(COMPRESSION) != null;
+    }
+
+    /**
+     * Reads the result bytes into memory, for the fields after them to be read.
+     */
+    private static CborReader.ByteStream buffer(CborReader.ByteStream resultBytes) throws IOException {
+        byte[] bytes;
+        try (InputStream stream = resultBytes.stream()) {
+            bytes = stream.readAllBytes();
+        }
+        return new CborReader.ByteStream(new ByteBufferInputStream(ByteBuffer.wrap(bytes)), bytes.length);
+    }
+
+    /**
+     * Reads the fields of a results map into the given map, up to and including its result bytes which are opened as
+     * a stream; then on to the end of the map if the source allows it, or if the result bytes had to be buffered.
+     * Result bytes streamed from the source are returned over the source itself; all others over a buffer.
+     */
+    private static CborReader.ByteStream readResults(CborReader reader, Map<String, Object> fields,
+                                                     Map<String, Object> results, boolean sliced)
+            throws IOException {
+        CborReader.ByteStream resultBytes = null;
+        long size = reader.readMapStart();
+        for (long i = 0; size < 0 || i < size; i++) {
+            String key = reader.readKey(size < 0);
+            if (key == null) {
+                break;
+            }
+
+            if (RESULT_BYTES.equals(key) && reader.nextIsBytes()) {
+                resultBytes = reader.readByteStream();
+                if (!sliced) {
+                    if (hasHeader(fields, results)) {
+                        return resultBytes;
+                    }
+                    // The fields needed to read the result bytes come after them.
+                    resultBytes = buffer(resultBytes);
+                }
+            } else {
+                results.put(key, reader.read());
+            }
         }
+        return resultBytes;
     }
 }
@@ -0,0 +1,22 @@
+package com.wherobots.db.jdbc.serde;
+
+/**
+ * Thrown when an inbound event can't be decoded. Carries the execution id of the event if it was read before the
+ * failure, so that the failure can be reported to its query rather than to the whole connection.
+ */
+public class MalformedEventException extends IllegalArgumentException {
+
+    private final String executionId;
+
+    public MalformedEventException(String executionId, Throwable cause) {
+        super(cause);
+        this.executionId = executionId;
+    }
+
+    /**
+     * @return the execution id of the event, or null if it wasn't read
+     */
+    public String executionId() {
+        return this.executionId;
+    }
+}
@@ -0,0 +1,118 @@
+package com.wherobots.db.jdbc.serde;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.compression.CompressionCodec;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.compression.NoCompressionCodec;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * An Arrow stream reader decompressing the buffers of each record batch in parallel.
+ * <p>
+ * Record batches of an Arrow IPC stream may have each of their buffers compressed on its own. The stock reader
+ * decompresses them one after the other as it loads the batch; this reader instead decompresses all the buffers of a
+ * batch concurrently on a fork-join pool, then loads the batch from the decompressed buffers. Batches that aren't
+ * compressed, or whose body is too small to be worth splitting up, are loaded as usual.
+ * </p>
+ */
+public class ParallelDecompressingStreamReader extends ArrowStreamReader {
+
+    private final CompressionCodec.Factory compressionFactory;
+    private final ForkJoinPool pool;
+    private final long minParallelBytes;
+
+    /**
+     * @param in                 the stream to read from
+     * @param allocator          the allocator for the vectors of the batches
+     * @param compressionFactory the factory of the codecs to decompress buffers with; codecs must be thread-safe
+     * @param pool               the pool to decompress buffers on
+     * @param minParallelBytes   the minimum size of a compressed batch body to decompress its buffers in parallel
+     */
+    public ParallelDecompressingStreamReader(InputStream in, BufferAllocator allocator,
+                                             CompressionCodec.Factory compressionFactory, ForkJoinPool pool,
+                                             long minParallelBytes) {
+        super(in, allocator, compressionFactory);
+        this.compressionFactory = compressionFactory;
+        this.pool = pool;
+        this.minParallelBytes = minParallelBytes;
+    }
+
+    @Override
+    protected void loadRecordBatch(ArrowRecordBatch batch) {
+        CompressionUtil.CodecType codecType =
+                CompressionUtil.CodecType.fromCompressionType(batch.getBodyCompression().getCodec());
+        if (codecType == CompressionUtil.CodecType.NO_COMPRESSION || batch.computeBodyLength() < this.minParallelBytes) {
+            super.loadRecordBatch(batch);
+            return;
+        }
+
+        ArrowRecordBatch decompressed;
+        try {
+            decompressed = this.decompress(batch, this.compressionFactory.createCodec(codecType));
+        } finally {
+            batch.close();
+        }
+        super.loadRecordBatch(decompressed);
+    }
+
+    /**
+     * Decompresses all buffers of the given batch concurrently, into a new uncompressed batch. The given batch keeps
+     * its own buffers, and must still be closed by the caller.
+     */
+    private ArrowRecordBatch decompress(ArrowRecordBatch batch, CompressionCodec codec) {
+        List<Callable<ArrowBuf>> tasks = new ArrayList<>();
+        for (ArrowBuf buffer : batch.getBuffers()) {
+            tasks.add(() -> {
+                // Decompressing consumes a reference to the buffer: take one on behalf of the batch's.
+                buffer.getReferenceManager().retain();
+                try {
+                    // Empty buffers, such as the validity buffer of a vector without nulls, aren't compressed.
+                    return buffer.writerIndex() > 0 ? codec.decompress(this.allocator, buffer) : buffer;
+                } catch (RuntimeException e) {
+                    buffer.getReferenceManager().release();
+                    throw e;
+                }
+            });
+        }
+
+        List<ArrowBuf> buffers = new ArrayList<>(tasks.size());
+        RuntimeException failure = null;
+        for (Future<ArrowBuf> future : this.pool.invokeAll(tasks)) {
+            try {
+                buffers.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException re
+                            ? re
+                            : new IllegalStateException("Failed to decompress record batch buffer", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new IllegalStateException("Interrupted while decompressing record batch buffers", e);
+                }
+            }
+        }
+
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            // The new batch takes its own reference to each buffer.
+            return new ArrowRecordBatch(batch.getLength(), batch.getNodes(), buffers,
+                    NoCompressionCodec.DEFAULT_BODY_COMPRESSION);
+        } finally {
+            buffers.forEach(ArrowBuf::close);
+        }
+    }
+}
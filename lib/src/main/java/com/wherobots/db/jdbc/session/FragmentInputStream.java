@@ -0,0 +1,268 @@
+package com.wherobots.db.jdbc.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link InputStream} over the fragments of a WebSocket message, readable while the message is still being
+ * received.
+ * <p>
+ * Fragments are appended by the WebSocket thread as they arrive, and consumed by whoever decodes the message.
+ * Appending never waits: the WebSocket thread is the only one reading from the connection, and must keep reading the
+ * control frames and the other messages multiplexed on it, whatever the pace of this message's consumer. Up to
+ * {@code capacity} bytes are held in memory; when the consumer falls further behind, the following fragments overflow
+ * to a temporary file, read back once the consumer catches up. Closing the stream discards everything received
+ * afterwards, so an abandoned message never holds up the connection.
+ * </p>
+ * <p>
+ * The overflow file is bounded too: a message overflowing by more than {@code overflowLimit} bytes fails, its
+ * consumer getting an {@link IOException} once it has read what was received before, and the rest of the message is
+ * discarded. Writing to the file happens on the WebSocket thread, as handing fragments over to another thread would
+ * mean holding them in memory meanwhile; this is a known cost, only paid by consumers lagging far behind.
+ * </p>
+ */
+final class FragmentInputStream extends InputStream {
+
+    private final long capacity;
+    private final Path directory;
+    private final long overflowLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = this.lock.newCondition();
+    private final Queue<ByteBuffer> fragments = new ArrayDeque<>();
+
+    private long buffered = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+    private IOException failure;
+
+    // Fragments received while the in-memory buffer is full, in order, after those of the buffer. Deleted once read.
+    private FileChannel overflow;
+    private long overflowWritten = 0;
+    private long overflowRead = 0;
+
+    /**
+     * @param capacity      maximum number of bytes held in memory
+     * @param directory     the directory to create the overflow file in, or null for the system's temporary directory
+     * @param overflowLimit maximum number of bytes written to the overflow file
+     */
+    FragmentInputStream(long capacity, Path directory, long overflowLimit) {
+        this.capacity = capacity;
+        this.directory = directory;
+        this.overflowLimit = overflowLimit;
+    }
+
+    /**
+     * Appends a fragment of the message, without waiting: beyond the capacity of the in-memory buffer, the fragment
+     * is written to the overflow file. The buffer is kept as-is, so the caller must not reuse it.
+     */
+    void append(ByteBuffer fragment) {
+        this.lock.lock();
+        try {
+            if (!this.isOpen() || !fragment.hasRemaining()) {
+                return;
+            }
+
+            // Always accept a fragment into an empty buffer, however large, so the stream can't stall.
+            if (this.overflow == null && (this.buffered == 0
+                    || this.buffered + fragment.remaining() <= this.capacity)) {
+                this.fragments.add(fragment);
+                this.buffered += fragment.remaining();
+            } else {
+                this.overflow(fragment);
+            }
+            this.changed.signalAll();
+        } catch (IOException e) {
+            this.fail(e);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void overflow(ByteBuffer fragment) throws IOException {
+        if (this.overflowWritten + fragment.remaining() > this.overflowLimit) {
+            throw new IOException(String.format(
+                    "Message not read fast enough: more than %d byte(s) of it overflowed to disk", this.overflowLimit));
+        }
+        if (this.overflow == null) {
+            Path file = this.directory == null
+                    ? Files.createTempFile("wherobots-message-", ".tmp")
+                    : Files.createTempFile(this.directory, "wherobots-message-", ".tmp");
+            this.overflow = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        while (fragment.hasRemaining()) {
+            this.overflowWritten += this.overflow.write(fragment, this.overflowWritten);
+        }
+    }
+
+    /**
+     * Marks the end of the message.
+     */
+    void finish() {
+        this.lock.lock();
+        try {
+            this.finished = true;
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Fails the stream: once the fragments received so far have been read, reads throw the given exception. Does
+     * nothing if the message was already complete.
+     */
+    void abort(IOException cause) {
+        this.lock.lock();
+        try {
+            if (!this.finished) {
+                this.fail(cause);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void fail(IOException cause) {
+        if (this.failure == null) {
+            this.failure = cause;
+            this.changed.signalAll();
+        }
+    }
+
+    private boolean isOpen() {
+        return !this.closed && this.failure == null;
+    }
+
+    private boolean hasData() {
+        return !this.fragments.isEmpty() || this.overflowRead < this.overflowWritten;
+    }
+
+    /**
+     * Waits for data, and returns true if there is some to read, or false at the end of the message.
+     */
+    private boolean await() throws IOException {
+        try {
+            while (!this.hasData() && !this.finished && this.failure == null && !this.closed) {
+                this.changed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for message data", e);
+        }
+
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        if (this.hasData()) {
+            return true;
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        return false;
+    }
+
+    /**
+     * Reads available data into the given buffer: from the in-memory fragments first, then from the overflow file.
+     */
+    private int readAvailable(ByteBuffer dst) throws IOException {
+        ByteBuffer fragment = this.fragments.peek();
+        if (fragment != null) {
+            int n = Math.min(dst.remaining(), fragment.remaining());
+            dst.put(dst.position(), fragment, fragment.position(), n);
+            dst.position(dst.position() + n);
+            fragment.position(fragment.position() + n);
+            this.buffered -= n;
+            if (!fragment.hasRemaining()) {
+                this.fragments.remove();
+            }
+            return n;
+        }
+
+        if (dst.remaining() > this.overflowWritten - this.overflowRead) {
+            dst.limit(dst.position() + (int) (this.overflowWritten - this.overflowRead));
+        }
+        int n = this.overflow.read(dst, this.overflowRead);
+        if (n < 0) {
+            throw new IOException("Message overflow file truncated");
+        }
+        this.overflowRead += n;
+        if (this.overflowRead == this.overflowWritten) {
+            // Caught up: drop the file, and go back to buffering in memory.
+            this.closeOverflow();
+        }
+        return n;
+    }
+
+    private void closeOverflow() throws IOException {
+        if (this.overflow != null) {
+            FileChannel overflow = this.overflow;
+            this.overflow = null;
+            this.overflowWritten = 0;
+            this.overflowRead = 0;
+            overflow.close();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+
+        this.lock.lock();
+        try {
+            if (!this.await()) {
+                return -1;
+            }
+            int n = this.readAvailable(ByteBuffer.wrap(b, off, len));
+            this.changed.signalAll();
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int available() {
+        this.lock.lock();
+        try {
+            return (int) Math.min(this.buffered + this.overflowWritten - this.overflowRead, Integer.MAX_VALUE);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.fragments.clear();
+            this.buffered = 0;
+            this.changed.signalAll();
+            this.closeOverflow();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.wherobots.db.jdbc.session;
+
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.Framedata;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An RFC 6455 draft that streams fragmented binary messages instead of buffering them whole.
+ * <p>
+ * The stock draft accumulates continuation frames until the final one arrives, and only then delivers the complete
+ * message. Here, the first fragment of a binary message opens a {@link FragmentInputStream} that is handed over right
+ * away, and the following fragments are appended to it as they come in; control frames and all other messages are
+ * processed as usual.
+ * </p>
+ */
+class StreamingDraft extends Draft_6455 {
+
+    private final Supplier<FragmentInputStream> streams;
+    private final Consumer<FragmentInputStream> listener;
+
+    // The binary message being streamed, if any. Only accessed from the WebSocket thread.
+    private FragmentInputStream current;
+
+    /**
+     * @param streams creates the stream of each fragmented binary message, buffering its fragments until they are read
+     * @param listener notified, on the WebSocket thread, of each fragmented binary message as it starts
+     */
+    StreamingDraft(Supplier<FragmentInputStream> streams, Consumer<FragmentInputStream> listener) {
+        this.streams = streams;
+        this.listener = listener;
+    }
+
+    @Override
+    public Draft copyInstance() {
+        return new StreamingDraft(this.streams, this.listener);
+    }
+
+    @Override
+    public void processFrame(WebSocketImpl webSocketImpl, Framedata frame) throws InvalidDataException {
+        Opcode opcode = frame.getOpcode();
+        if (this.current == null && opcode == Opcode.BINARY && !frame.isFin()) {
+            this.current = this.streams.get();
+            this.listener.accept(this.current);
+            this.append(frame);
+        } else if (this.current != null && opcode == Opcode.CONTINUOUS) {
+            this.append(frame);
+        } else {
+            super.processFrame(webSocketImpl, frame);
+        }
+    }
+
+    private void append(Framedata frame) {
+        FragmentInputStream stream = this.current;
+        // Each frame gets its own payload buffer, so it can be queued without copying.
+        stream.append(frame.getPayloadData());
+
+        if (frame.isFin()) {
+            stream.finish();
+            this.current = null;
+        }
+    }
+}
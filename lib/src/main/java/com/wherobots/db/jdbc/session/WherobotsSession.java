@@ -1,8 +1,11 @@
 package com.wherobots.db.jdbc.session;
 
 import com.wherobots.db.jdbc.internal.Frame;
+import com.wherobots.db.jdbc.internal.SharedExecutors;
+import org.java_websocket.WebSocket;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ServerHandshake;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,32 +14,126 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
-import java.util.Iterator;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A WebSocket connection to a running Wherobots SQL Session instance.
  * <p>
- * This class wraps a WebSocket connection to a Wherobots SQL Session server and presents itself as an iterable of
- * {@link Frame} messages.
+ * This class wraps a WebSocket connection to a Wherobots SQL Session server and exposes inbound messages as a
+ * queue of {@link Frame}s. Consumers register a frame listener to be notified when frames are available, and drain
+ * them with {@link #poll()}.
+ * </p>
+ * <p>
+ * Keep-alive pings are driven by the driver-wide {@link SharedExecutors#heartbeat()} scheduler rather than by a
+ * connection-lost checker thread per session.
+ * </p>
+ * <p>
+ * Fragmented binary messages are not buffered until complete: they are forwarded as soon as their first fragment
+ * arrives, as a frame carrying a stream that the remaining fragments feed into (see {@link StreamingDraft}). Results
+ * can thus be decoded while they are still being received.
  * </p>
  *
  * @author mpetazzoni
  */
-public class WherobotsSession extends WebSocketClient implements Iterable<Frame>, Closeable {
+public class WherobotsSession extends WebSocketClient implements Closeable {
 
     public static final Logger logger = LoggerFactory.getLogger(WherobotsSession.class);
 
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 60;
+
+    // How much of a fragmented message is held in memory ahead of its consumer, before overflowing to a temporary file.
+    private static final long MESSAGE_BUFFER_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * How much of a fragmented message may overflow to disk by default, before the message fails.
+     */
+    public static final long DEFAULT_MESSAGE_SPILL_LIMIT = 16L * 1024 * 1024 * 1024;
+
     private final BlockingQueue<Frame> queue;
+    private final ScheduledFuture<?> heartbeat;
+
+    private volatile Runnable frameListener;
+    private volatile long lastPongNanos = System.nanoTime();
+    private volatile FragmentInputStream streaming;
+    private volatile Path spillDirectory;
+    private volatile long spillLimit = DEFAULT_MESSAGE_SPILL_LIMIT;
 
     public WherobotsSession(URI uri, Map<String, String> headers) throws IOException, InterruptedException {
-        super(uri, headers);
+        this(uri, headers, new AtomicReference<>());
+    }
+
+    private WherobotsSession(URI uri, Map<String, String> headers, AtomicReference<WherobotsSession> self)
+            throws IOException, InterruptedException {
+        super(uri, new StreamingDraft(() -> self.get().newStream(), stream -> self.get().onMessage(stream)), headers);
+        self.set(this);
         this.queue = new ArrayBlockingQueue<>(1);
+
+        // Disable the per-client connection-lost checker thread; see checkAlive().
+        this.setConnectionLostTimeout(0);
         if (!this.connectBlocking()) {
             throw new IOException("Failed to connect to SQL Session!");
         }
+
+        this.heartbeat = SharedExecutors.heartbeat().scheduleAtFixedRate(
+                this::checkAlive, HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (this.isClosed()) {
+            this.heartbeat.cancel(false);
+        }
+    }
+
+    /**
+     * Sets the listener notified, on the WebSocket thread, every time a frame is queued. The listener is expected to
+     * hand off to another thread and drain the queue from there with {@link #poll()}. If frames are already pending,
+     * the listener is notified right away.
+     *
+     * @param listener the listener to notify of new frames
+     */
+    public void setFrameListener(Runnable listener) {
+        this.frameListener = listener;
+        if (listener != null && this.hasPendingFrames()) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Sets where the fragmented messages that their consumers are slow to read overflow to, and how much of each may
+     * overflow before it fails. Applies to the messages received from now on.
+     *
+     * @param directory the directory to create overflow files in, or null for the system's temporary directory
+     * @param limit     the maximum number of bytes of a message written to its overflow file
+     */
+    public void setMessageSpill(Path directory, long limit) {
+        this.spillDirectory = directory;
+        this.spillLimit = limit;
+    }
+
+    private FragmentInputStream newStream() {
+        return new FragmentInputStream(MESSAGE_BUFFER_BYTES, this.spillDirectory, this.spillLimit);
+    }
+
+    /**
+     * Sends a keep-alive ping, or drops the connection if the server didn't answer the previous ones in time.
+     */
+    private void checkAlive() {
+        if (!this.isOpen()) {
+            return;
+        }
+
+        long sincePong = System.nanoTime() - this.lastPongNanos;
+        if (sincePong > TimeUnit.SECONDS.toNanos(HEARTBEAT_INTERVAL_SECONDS * 3 / 2)) {
+            logger.warn("No pong received from SQL Session in {}s, closing connection.",
+                    TimeUnit.NANOSECONDS.toSeconds(sincePong));
+            this.closeConnection(CloseFrame.ABNORMAL_CLOSE, "Connection lost");
+            return;
+        }
+
+        this.sendPing();
     }
 
     @Override
@@ -50,6 +147,12 @@ public class WherobotsSession extends WebSocketClient implements Iterable<Frame>
         } catch (InterruptedException e) {
             logger.warn("Interrupted while handling inbound message");
             this.close(CloseFrame.UNEXPECTED_CONDITION);
+            return;
+        }
+
+        Runnable listener = this.frameListener;
+        if (listener != null) {
+            listener.run();
         }
     }
 
@@ -65,25 +168,71 @@ public class WherobotsSession extends WebSocketClient implements Iterable<Frame>
         this.forward(new Frame(null, bytes, null));
     }
 
+    private void onMessage(FragmentInputStream stream) {
+        logger.debug("< fragmented message");
+        this.streaming = stream;
+        this.forward(new Frame(null, null, stream, null));
+    }
+
+    /**
+     * Fails the fragmented message being received, if any, so its reader doesn't wait for fragments that will never
+     * come, and the WebSocket thread doesn't wait for a reader.
+     */
+    private void abortStreaming(IOException cause) {
+        FragmentInputStream stream = this.streaming;
+        if (stream != null) {
+            stream.abort(cause);
+        }
+    }
+
+    @Override
+    public void onWebsocketPong(WebSocket conn, Framedata f) {
+        this.lastPongNanos = System.nanoTime();
+    }
+
     @Override
     public void onClose(int code, String reason, boolean byHost) {
         logger.info("WebSocket connection closed ({}: {}).", code, reason);
-        this.forward(new Frame(null, null, new IOException("WebSocket connection closed")));
+        if (this.heartbeat != null) {
+            this.heartbeat.cancel(false);
+        }
+        IOException error = new IOException("WebSocket connection closed");
+        this.abortStreaming(error);
+        this.forward(new Frame(null, null, error));
     }
 
     @Override
     public void onError(Exception e) {
+        this.abortStreaming(e instanceof IOException ioe ? ioe : new IOException(e));
         this.forward(new Frame(null, null, e));
     }
 
+    @Override
+    public void close() {
+        // The WebSocket thread may be waiting on a message's reader; release it so the closing handshake can proceed.
+        this.abortStreaming(new IOException("WebSocket connection closed"));
+        super.close();
+    }
+
     @Override
     public void send(String text) {
         logger.debug("> {}", text);
         super.send(text);
     }
 
-    @Override
-    public Iterator<Frame> iterator() {
-        return this.queue.iterator();
+    /**
+     * Retrieves and removes the next inbound frame, without waiting.
+     *
+     * @return the next frame, or null if no frame is pending
+     */
+    public Frame poll() {
+        return this.queue.poll();
+    }
+
+    /**
+     * @return true if inbound frames are waiting to be polled
+     */
+    public boolean hasPendingFrames() {
+        return !this.queue.isEmpty();
     }
 }
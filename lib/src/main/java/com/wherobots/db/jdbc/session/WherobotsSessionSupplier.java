@@ -25,6 +25,7 @@ import java.net.http.HttpResponse;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * Requests and waits for a Wherobots SQL Session.
@@ -78,9 +79,31 @@ public abstract class WherobotsSessionSupplier {
                                           boolean forceNew, Integer shutdownAfterInactiveSeconds,
                                           Map<String, String> headers)
         throws SQLException {
-        HttpClient client = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
+        return create(host, runtime, region, version, sessionType, forceNew, shutdownAfterInactiveSeconds, headers, null);
+    }
+
+    /**
+     * Requests the creation of a SQL Session from the Wherobots Cloud API, waits for it to be ready, and connects to
+     * it, running the HTTP client's asynchronous tasks on the given executor (e.g. a virtual thread executor).
+     * <p>
+     * Provisioning runs on the calling thread: the caller waits for the outcome either way, and handing the flow to
+     * another thread would only add a hop. Called from a virtual thread, its waits don't hold up a carrier thread.
+     * </p>
+     *
+     * @param executor the executor for the HTTP client's asynchronous tasks, or null for the client's default
+     * @see #create(String, String, String, String, SessionType, boolean, Integer, Map)
+     */
+    public static WherobotsSession create(String host, String runtime, String region,
+                                          String version, SessionType sessionType,
+                                          boolean forceNew, Integer shutdownAfterInactiveSeconds,
+                                          Map<String, String> headers, Executor executor)
+        throws SQLException {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        HttpClient client = builder.build();
 
         RetryConfig config = RetryConfig.custom()
                 .maxAttempts(100)
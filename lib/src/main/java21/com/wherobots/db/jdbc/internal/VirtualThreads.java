@@ -0,0 +1,33 @@
+package com.wherobots.db.jdbc.internal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, when the Java runtime supports them.
+ * <p>
+ * This is the Java 21 implementation of this class, packaged under {@code META-INF/versions/21} of the driver's
+ * multi-release jar.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if virtual threads are available in this Java runtime
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread.
+     *
+     * @param name the name prefix of the virtual threads
+     * @return the new executor
+     */
+    public static ExecutorService newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+}
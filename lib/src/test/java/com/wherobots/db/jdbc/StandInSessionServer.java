@@ -0,0 +1,185 @@
+package com.wherobots.db.jdbc;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A local stand-in for a SQL Session: every query succeeds, with the same Arrow results, sent uncompressed. Results
+ * are pushed right away if the execute_sql request carries retrieval options, and otherwise sent in response to
+ * retrieve_results. All requests received are recorded.
+ * <p>
+ * Given a fetch size, results are cut into pages of whole batches, up to that many rows unless a single batch is
+ * larger, on the first request for them; each request then sends the next page only.
+ * </p>
+ */
+class StandInSessionServer extends WebSocketServer {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+
+    private final Supplier<byte[]> results;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Map<String, Deque<byte[]>> pages = new ConcurrentHashMap<>();
+
+    final List<Map<String, Object>> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param results supplies the Arrow IPC stream sent as the results of each query
+     */
+    StandInSessionServer(Supplier<byte[]> results) {
+        super(new InetSocketAddress("localhost", 0));
+        this.results = results;
+        this.setReuseAddr(true);
+    }
+
+    /**
+     * Starts the server and returns its WebSocket URI, to connect to with {@link WherobotsJdbcDriver#WS_URI_PROP}.
+     */
+    String startAndGetUri() throws InterruptedException {
+        this.start();
+        if (!this.started.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Stand-in session server did not start");
+        }
+        return "ws://localhost:" + this.getPort();
+    }
+
+    List<Object> requestKinds() {
+        return this.requests.stream().map(r -> r.get("kind")).toList();
+    }
+
+    @Override
+    public void onStart() {
+        this.started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            Map<String, Object> request = JSON.readValue(message, new TypeReference<>() {});
+            this.requests.add(request);
+
+            String executionId = (String) request.get("execution_id");
+            switch ((String) request.get("kind")) {
+                case "execute_sql" -> {
+                    conn.send(JSON.writeValueAsString(Map.of(
+                            "kind", "state_updated",
+                            "execution_id", executionId,
+                            "state", "succeeded")));
+                    if (request.containsKey("compression")) {
+                        this.sendResults(conn, executionId, request);
+                    }
+                }
+                case "retrieve_results" -> this.sendResults(conn, executionId, request);
+                default -> {
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sendResults(WebSocket conn, String executionId, Map<String, Object> request) throws Exception {
+        // Fields are sent ahead of the result bytes, for the driver to parse them before streaming the bytes.
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("compression", "none");
+        results.put("format", "arrow");
+        if (request.get("fetch_size") instanceof Number fetchSize) {
+            Deque<byte[]> remaining = this.pages.computeIfAbsent(
+                    executionId, id -> pages(this.results.get(), fetchSize.intValue()));
+            byte[] page = remaining.poll();
+            results.put("has_more", !remaining.isEmpty());
+            if (page != null) {
+                results.put("result_bytes", page);
+            }
+        } else {
+            results.put("result_bytes", this.results.get());
+        }
+
+        conn.send(CBOR.writeValueAsBytes(Map.of(
+                "kind", "execution_result",
+                "execution_id", executionId,
+                "state", "succeeded",
+                "results", results)));
+    }
+
+    /**
+     * Cuts an Arrow IPC stream into streams of whole batches, of up to the given number of rows each unless a single
+     * batch holds more.
+     */
+    private static Deque<byte[]> pages(byte[] stream, int fetchSize) {
+        Deque<byte[]> pages = new ArrayDeque<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(stream), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            ByteArrayOutputStream out = null;
+            ArrowStreamWriter writer = null;
+            int rows = 0;
+            while (reader.loadNextBatch()) {
+                if (writer != null && rows + root.getRowCount() > fetchSize) {
+                    writer.end();
+                    writer.close();
+                    pages.add(out.toByteArray());
+                    writer = null;
+                }
+                if (writer == null) {
+                    out = new ByteArrayOutputStream();
+                    writer = new ArrowStreamWriter(root, reader, out);
+                    writer.start();
+                    rows = 0;
+                }
+                writer.writeBatch();
+                rows += root.getRowCount();
+            }
+
+            if (writer == null) {
+                // No batches at all: a single page with the schema only.
+                out = new ByteArrayOutputStream();
+                writer = new ArrowStreamWriter(root, reader, out);
+                writer.start();
+            }
+            writer.end();
+            writer.close();
+            pages.add(out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pages;
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+    }
+}
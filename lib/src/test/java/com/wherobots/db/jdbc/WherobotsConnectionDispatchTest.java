@@ -0,0 +1,123 @@
+package com.wherobots.db.jdbc;
+
+import com.wherobots.db.jdbc.internal.Frame;
+import com.wherobots.db.jdbc.internal.SharedExecutors;
+import com.wherobots.db.jdbc.session.WherobotsSession;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that connections don't own threads, that their inbound frames are handled on the shared dispatcher pool,
+ * and that idle connections don't burn CPU.
+ */
+class WherobotsConnectionDispatchTest {
+
+    private static final int CONNECTIONS = 50;
+    private static final long IDLE_MILLIS = 1000;
+    private static final long MAX_IDLE_CPU_MILLIS = 50;
+
+    @Test
+    void connectionsShareDispatcherPool() throws Exception {
+        Set<String> dispatchThreads = ConcurrentHashMap.newKeySet();
+        CountDownLatch handled = new CountDownLatch(CONNECTIONS);
+        List<Runnable> listeners = new ArrayList<>();
+
+        int threadsBefore = Thread.activeCount();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            // Each session delivers a single frame signaling it was closed, which makes the connection close itself.
+            Queue<Frame> frames = new ConcurrentLinkedQueue<>();
+            frames.add(new Frame(null, null, new IOException("WebSocket connection closed")));
+
+            WherobotsSession session = mock(WherobotsSession.class);
+            when(session.poll()).thenAnswer(invocation -> {
+                dispatchThreads.add(Thread.currentThread().getName());
+                return frames.poll();
+            });
+            doAnswer(invocation -> {
+                handled.countDown();
+                return null;
+            }).when(session).close();
+
+            new WherobotsJdbcConnection(session, new Properties());
+
+            ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+            verify(session).setFrameListener(listener.capture());
+            listeners.add(listener.getValue());
+        }
+
+        int poolSize = ((ThreadPoolExecutor) SharedExecutors.dispatcher(1)).getMaximumPoolSize();
+        assertTrue(Thread.activeCount() - threadsBefore <= poolSize,
+                "connections should not start threads of their own");
+
+        listeners.forEach(Runnable::run);
+        assertTrue(handled.await(5, TimeUnit.SECONDS), "not all connections handled their frames");
+
+        assertFalse(dispatchThreads.isEmpty());
+        assertTrue(dispatchThreads.size() <= poolSize);
+        dispatchThreads.forEach(name -> assertTrue(name.startsWith("wherobots-dispatcher-"), name));
+    }
+
+    @Test
+    void idleConnectionsDoNotBurnCpu() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadCpuTimeSupported(), "thread CPU time measurement is not supported");
+        threads.setThreadCpuTimeEnabled(true);
+
+        StandInSessionServer server = new StandInSessionServer(() -> new byte[0]);
+        Properties props = new Properties();
+        props.setProperty(WherobotsJdbcDriver.WS_URI_PROP, server.startAndGetUri());
+
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                connections.add(new WherobotsJdbcDriver().connect(WherobotsJdbcDriver.URL_PREFIX + "localhost", props));
+            }
+
+            long before = driverCpuTime(threads);
+            Thread.sleep(IDLE_MILLIS);
+            long used = driverCpuTime(threads) - before;
+
+            assertTrue(used < TimeUnit.MILLISECONDS.toNanos(MAX_IDLE_CPU_MILLIS),
+                    String.format("%d idle connections used %d ms of CPU over %d ms",
+                            CONNECTIONS, TimeUnit.NANOSECONDS.toMillis(used), IDLE_MILLIS));
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+            server.stop(1000);
+        }
+    }
+
+    /**
+     * The CPU time used so far by all the driver's threads, and the WebSocket threads of its sessions and of the
+     * stand-in server.
+     */
+    private static long driverCpuTime(ThreadMXBean threads) {
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("wherobots-") || thread.getName().startsWith("WebSocket")) {
+                total += Math.max(0, threads.getThreadCpuTime(thread.getId()));
+            }
+        }
+        return total;
+    }
+}
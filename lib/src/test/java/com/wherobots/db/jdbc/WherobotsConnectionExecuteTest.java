@@ -0,0 +1,297 @@
+package com.wherobots.db.jdbc;
+
+import com.wherobots.db.DataCompression;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WherobotsConnectionExecuteTest {
+
+    private StandInSessionServer server;
+    private String wsUri;
+
+    /**
+     * Results with ids 1 to 3, one row per batch.
+     */
+    private static byte[] results() {
+        try (BufferAllocator allocator = new RootAllocator();
+             IntVector id = new IntVector("id", allocator)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (VectorSchemaRoot root = VectorSchemaRoot.of(id);
+                 ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+                writer.start();
+                for (int i = 0; i < 3; i++) {
+                    id.allocateNew(1);
+                    id.set(0, i + 1);
+                    root.setRowCount(1);
+                    writer.writeBatch();
+                }
+                writer.end();
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Results with a dictionary-encoded column of countries: US, FR, FR, one row per batch.
+     */
+    private static byte[] countryResults() {
+        try (BufferAllocator allocator = new RootAllocator();
+             VarCharVector countries = new VarCharVector("countries", allocator)) {
+            countries.allocateNew(2);
+            countries.set(0, "FR".getBytes(StandardCharsets.UTF_8));
+            countries.set(1, "US".getBytes(StandardCharsets.UTF_8));
+            countries.setValueCount(2);
+            Dictionary dictionary = new Dictionary(countries, new DictionaryEncoding(1L, false, null));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (FieldVector encoded = country(allocator, dictionary, "US");
+                 VectorSchemaRoot root = new VectorSchemaRoot(List.of(encoded));
+                 ArrowStreamWriter writer = new ArrowStreamWriter(
+                         root, new DictionaryProvider.MapDictionaryProvider(dictionary), out)) {
+                writer.start();
+                root.setRowCount(1);
+                writer.writeBatch();
+                for (String value : List.of("FR", "FR")) {
+                    try (FieldVector next = country(allocator, dictionary, value)) {
+                        next.makeTransferPair(encoded).transfer();
+                    }
+                    root.setRowCount(1);
+                    writer.writeBatch();
+                }
+                writer.end();
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FieldVector country(BufferAllocator allocator, Dictionary dictionary, String value) {
+        try (VarCharVector raw = new VarCharVector("country", allocator)) {
+            raw.allocateNew(1);
+            raw.set(0, value.getBytes(StandardCharsets.UTF_8));
+            raw.setValueCount(1);
+            return (FieldVector) DictionaryEncoder.encode(raw, dictionary);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.server = new StandInSessionServer(WherobotsConnectionExecuteTest::results);
+        this.wsUri = this.server.startAndGetUri();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        this.server.stop(1000);
+    }
+
+    private Connection connect(boolean executeAndFetch) throws Exception {
+        return this.connect(executeAndFetch, new Properties());
+    }
+
+    private Connection connect(boolean executeAndFetch, Properties props) throws Exception {
+        props.setProperty(WherobotsJdbcDriver.WS_URI_PROP, this.wsUri);
+        props.put(WherobotsJdbcDriver.COMPRESSION_PROP, DataCompression.none);
+        props.setProperty(WherobotsJdbcDriver.EXECUTE_AND_FETCH_PROP, String.valueOf(executeAndFetch));
+        return new WherobotsJdbcDriver().connect(WherobotsJdbcDriver.URL_PREFIX + "localhost", props);
+    }
+
+    private static List<Integer> ids(Connection connection) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    void executeAndFetchInSingleRoundTrip() throws Exception {
+        try (Connection connection = this.connect(true)) {
+            assertEquals(List.of(1, 2, 3), ids(connection));
+        }
+
+        assertEquals(List.of("execute_sql"), this.server.requestKinds());
+        assertEquals("none", this.server.requests.get(0).get("compression"));
+    }
+
+    @Test
+    void retrieveResultsSeparatelyByDefault() throws Exception {
+        try (Connection connection = this.connect(false)) {
+            assertEquals(List.of(1, 2, 3), ids(connection));
+        }
+
+        assertEquals(List.of("execute_sql", "retrieve_results"), this.server.requestKinds());
+        assertFalse(this.server.requests.get(0).containsKey("compression"));
+    }
+
+    @Test
+    void retrieveResultsInPagesAsTheyAreRead() throws Exception {
+        try (Connection connection = this.connect(false);
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(2);
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+                // The second page is only requested once the first one is read through.
+                assertEquals(List.of("execute_sql", "retrieve_results"), this.server.requestKinds());
+
+                assertTrue(rs.next());
+                assertEquals(3, rs.getInt(1));
+                assertFalse(rs.next());
+            }
+        }
+
+        assertEquals(List.of("execute_sql", "retrieve_results", "retrieve_results"), this.server.requestKinds());
+        assertEquals(2, this.server.requests.get(1).get("fetch_size"));
+        assertEquals(2, this.server.requests.get(2).get("fetch_size"));
+    }
+
+    @Test
+    void executeAndFetchFirstPage() throws Exception {
+        try (Connection connection = this.connect(true);
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(1);
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+            assertEquals(List.of(1, 2, 3), ids);
+        }
+
+        assertEquals(List.of("execute_sql", "retrieve_results", "retrieve_results"), this.server.requestKinds());
+        assertEquals(1, this.server.requests.get(0).get("fetch_size"));
+    }
+
+    @Test
+    void stopAtMaxRows() throws Exception {
+        try (Connection connection = this.connect(false);
+             Statement stmt = connection.createStatement()) {
+            stmt.setMaxRows(2);
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+                // The stand-in ignores the limit: the rest of the results are released unread.
+                assertFalse(rs.next());
+                assertEquals(0, stmt.unwrap(WherobotsStatement.class).getMemoryStats().allocated());
+            }
+        }
+
+        assertEquals(2, this.server.requests.get(0).get("max_rows"));
+    }
+
+    @Test
+    void closeConnectionClosesOpenStatements() throws Exception {
+        Connection connection = this.connect(false);
+        Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT id FROM t");
+        assertTrue(rs.next());
+
+        connection.close();
+        assertTrue(rs.isClosed());
+        assertTrue(stmt.isClosed());
+        assertEquals(0, connection.unwrap(WherobotsJdbcConnection.class).getMemoryStats().allocated());
+    }
+
+    @Test
+    void cancelQueryWhoseResultsExceedTheMemoryLimit() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(WherobotsJdbcDriver.STATEMENT_MEMORY_LIMIT_PROP, "1");
+        try (Connection connection = this.connect(false, props);
+             Statement stmt = connection.createStatement(
+                     ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+            // Scrollable results are stored as the query is executed, so they don't fit before they are read.
+            SQLException e = assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT id FROM t"));
+            assertEquals("53200", e.getSQLState());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!this.server.requestKinds().contains("cancel") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("execute_sql", "retrieve_results", "cancel"), this.server.requestKinds());
+        }
+    }
+
+    @Test
+    void scrollThroughDictionaryEncodedResults() throws Exception {
+        this.server.stop(1000);
+        this.server = new StandInSessionServer(WherobotsConnectionExecuteTest::countryResults);
+        this.wsUri = this.server.startAndGetUri();
+
+        try (Connection connection = this.connect(false);
+             Statement stmt = connection.createStatement(
+                     ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = stmt.executeQuery("SELECT country FROM t")) {
+            assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, rs.getType());
+            assertNull(stmt.getWarnings());
+
+            assertTrue(rs.last());
+            assertEquals("FR", rs.getString(1));
+            assertTrue(rs.first());
+            assertEquals("US", rs.getString(1));
+            assertTrue(rs.relative(1));
+            assertEquals("FR", rs.getString(1));
+        }
+    }
+
+    @Test
+    void pageThroughDictionaryEncodedResults() throws Exception {
+        this.server.stop(1000);
+        this.server = new StandInSessionServer(WherobotsConnectionExecuteTest::countryResults);
+        this.wsUri = this.server.startAndGetUri();
+
+        List<String> countries = new ArrayList<>();
+        try (Connection connection = this.connect(false);
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(1);
+            try (ResultSet rs = stmt.executeQuery("SELECT country FROM t")) {
+                while (rs.next()) {
+                    countries.add(rs.getString(1));
+                }
+            }
+        }
+
+        // Each page comes with dictionaries of its own, replacing those of the page before.
+        assertEquals(List.of("US", "FR", "FR"), countries);
+        assertEquals(List.of("execute_sql", "retrieve_results", "retrieve_results", "retrieve_results"),
+                this.server.requestKinds());
+    }
+}
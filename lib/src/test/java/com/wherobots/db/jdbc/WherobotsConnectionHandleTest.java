@@ -1,12 +1,16 @@
 package com.wherobots.db.jdbc;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.wherobots.db.jdbc.internal.ExecutionResult;
+import com.wherobots.db.jdbc.internal.Frame;
 import com.wherobots.db.jdbc.internal.Query;
 import com.wherobots.db.jdbc.models.Event;
 import com.wherobots.db.jdbc.models.QueryState;
 import com.wherobots.db.jdbc.models.Store;
 import com.wherobots.db.jdbc.models.StoreResult;
 import com.wherobots.db.jdbc.session.WherobotsSession;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +18,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.lang.reflect.Field;
@@ -41,7 +50,6 @@ class WherobotsConnectionHandleTest {
         // Use lenient() because the daemon thread may or may not call these depending
         // on timing; Mockito strict mode would flag them as unnecessary otherwise.
         lenient().when(mockSession.isClosed()).thenReturn(true);
-        lenient().when(mockSession.iterator()).thenReturn(java.util.Collections.emptyIterator());
 
         connection = new WherobotsJdbcConnection(mockSession, new Properties());
 
@@ -180,4 +188,56 @@ class WherobotsConnectionHandleTest {
         assertNull(result.error());
         assertNull(result.storeResult());
     }
+
+    /**
+     * Test: a binary message for a query is truncated after its execution id.
+     * Expected: the query fails with the decoding error, and the connection stays open.
+     */
+    @Test
+    void malformedMessageFailsItsQueryOnly() throws Exception {
+        String executionId = "test-exec-5";
+        WherobotsStatement statement = spy(new WherobotsStatement(connection));
+
+        queries.put(executionId, new Query(executionId, "SELECT 1", statement, QueryState.succeeded));
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("compression", "none");
+        results.put("result_bytes", new byte[64]);
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("kind", "execution_result");
+        event.put("execution_id", executionId);
+        event.put("results", results);
+        byte[] encoded = new ObjectMapper(new CBORFactory()).writeValueAsBytes(event);
+
+        Method process = WherobotsJdbcConnection.class.getDeclaredMethod("process", Frame.class);
+        process.setAccessible(true);
+        process.invoke(connection, new Frame(null, ByteBuffer.wrap(encoded, 0, encoded.length - 8), null));
+
+        ArgumentCaptor<ExecutionResult> captor = ArgumentCaptor.forClass(ExecutionResult.class);
+        verify(statement).onExecutionResult(captor.capture());
+        assertNull(captor.getValue().result());
+        assertInstanceOf(SQLException.class, captor.getValue().error());
+
+        verify(mockSession, never()).close();
+    }
+
+    /**
+     * Test: a result arrives after its statement timed out, then another after it was closed.
+     * Expected: both are released rather than left queued.
+     */
+    @Test
+    void lateResultsOfAbandonedStatementAreReleased() throws Exception {
+        WherobotsStatement statement = new WherobotsStatement(connection);
+        statement.setQueryTimeout(1);
+        assertThrows(SQLTimeoutException.class, () -> statement.execute("SELECT 1"));
+
+        ArrowStreamReader timedOut = mock(ArrowStreamReader.class);
+        statement.onExecutionResult(new ExecutionResult(timedOut, null, null));
+        verify(timedOut).close();
+
+        statement.close();
+        ArrowStreamReader closed = mock(ArrowStreamReader.class);
+        statement.onExecutionResult(new ExecutionResult(closed, null, null));
+        verify(closed).close();
+    }
 }
@@ -3,7 +3,11 @@ package com.wherobots.db.jdbc;
 
 import org.junit.jupiter.api.Test;
 
+import java.sql.SQLException;
 import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class WherobotsJdbcDriverTest {
 
@@ -17,4 +21,23 @@ class WherobotsJdbcDriverTest {
         String user_agent = header.get("User-Agent");
         assert user_agent.equals("wherobots-jdbc-driver/unknown os/os1 java/1");
     }
-}
\ No newline at end of file
+
+    @Test
+    void rejectMalformedNumericProperties() {
+        WherobotsJdbcDriver driver = new WherobotsJdbcDriver();
+        for (Map.Entry<String, String> property : Map.of(
+                WherobotsJdbcDriver.DISPATCHER_THREADS_PROP, "many",
+                WherobotsJdbcDriver.DECODER_THREADS_PROP, "0",
+                WherobotsJdbcDriver.SHUTDOWN_AFTER_INACTIVE_SECONDS_PROP, "-1",
+                WherobotsJdbcDriver.PREFETCH_BATCHES_PROP, "-2",
+                WherobotsJdbcDriver.MEMORY_LIMIT_PROP, "0",
+                WherobotsJdbcDriver.STATEMENT_MEMORY_LIMIT_PROP, "0",
+                WherobotsJdbcDriver.SPILL_THRESHOLD_PROP, "1.5").entrySet()) {
+            Properties props = new Properties();
+            props.setProperty(property.getKey(), property.getValue());
+            SQLException e = assertThrows(SQLException.class,
+                    () -> driver.connect(WherobotsJdbcDriver.URL_PREFIX + "localhost", props));
+            assertTrue(e.getMessage().contains(property.getKey()), e.getMessage());
+        }
+    }
+}
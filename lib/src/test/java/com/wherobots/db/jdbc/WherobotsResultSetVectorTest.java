@@ -0,0 +1,813 @@
+package com.wherobots.db.jdbc;
+
+import com.wherobots.db.jdbc.internal.BatchSource;
+import com.wherobots.db.jdbc.internal.BatchStore;
+import com.wherobots.db.jdbc.internal.PrefetchingBatchSource;
+import com.wherobots.db.jdbc.internal.StoredBatchSource;
+import com.wherobots.db.jdbc.internal.StreamBatchSource;
+import com.wherobots.db.jdbc.models.MemoryStats;
+import com.wherobots.db.jdbc.models.SpillStats;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.complex.impl.UnionListWriter;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.util.TransferPair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Struct;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads result sets over in-memory Arrow streams, covering how column vectors are read.
+ */
+class WherobotsResultSetVectorTest {
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        this.allocator = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.allocator.close();
+    }
+
+    /**
+     * Builds a result set over a single batch made of the given vectors, which are closed once written.
+     */
+    private ResultSet resultSet(List<FieldVector> vectors) throws Exception {
+        return this.resultSet(vectors, null);
+    }
+
+    private ResultSet resultSet(List<FieldVector> vectors, DictionaryProvider dictionaries) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VectorSchemaRoot root = new VectorSchemaRoot(vectors);
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, dictionaries, out)) {
+            root.setRowCount(vectors.get(0).getValueCount());
+            writer.start();
+            writer.writeBatch();
+            writer.end();
+        }
+
+        return new WherobotsResultSet(null,
+                new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), this.allocator));
+    }
+
+    @Test
+    void primitiveGetters() throws Exception {
+        BitVector bool = new BitVector("bool", this.allocator);
+        TinyIntVector tiny = new TinyIntVector("tiny", this.allocator);
+        SmallIntVector small = new SmallIntVector("small", this.allocator);
+        IntVector integer = new IntVector("int", this.allocator);
+        BigIntVector big = new BigIntVector("big", this.allocator);
+        Float4Vector float4 = new Float4Vector("float4", this.allocator);
+        Float8Vector float8 = new Float8Vector("float8", this.allocator);
+        List<FieldVector> vectors = List.of(bool, tiny, small, integer, big, float4, float8);
+        vectors.forEach(v -> v.allocateNew());
+
+        // First row has values, second row is all nulls.
+        bool.set(0, 1);
+        tiny.set(0, (byte) 42);
+        small.set(0, (short) 1234);
+        integer.set(0, 100000);
+        big.set(0, 9999999999L);
+        float4.set(0, 3.14f);
+        float8.set(0, 2.718281828);
+        vectors.forEach(v -> v.setValueCount(2));
+
+        try (ResultSet rs = this.resultSet(vectors)) {
+            assertTrue(rs.next());
+            assertTrue(rs.getBoolean(1));
+            assertFalse(rs.wasNull());
+            assertEquals((byte) 42, rs.getByte(2));
+            assertEquals((short) 1234, rs.getShort(3));
+            assertEquals(100000, rs.getInt(4));
+            assertEquals(9999999999L, rs.getLong(5));
+            assertEquals(3.14f, rs.getFloat(6));
+            assertEquals(2.718281828, rs.getDouble(7));
+            assertFalse(rs.wasNull());
+
+            assertTrue(rs.next());
+            assertFalse(rs.getBoolean(1));
+            assertTrue(rs.wasNull());
+            assertEquals(0, rs.getByte(2));
+            assertTrue(rs.wasNull());
+            assertEquals(0, rs.getShort(3));
+            assertTrue(rs.wasNull());
+            assertEquals(0, rs.getInt(4));
+            assertTrue(rs.wasNull());
+            assertEquals(0L, rs.getLong(5));
+            assertTrue(rs.wasNull());
+            assertEquals(0.0f, rs.getFloat(6));
+            assertTrue(rs.wasNull());
+            assertEquals(0.0, rs.getDouble(7));
+            assertTrue(rs.wasNull());
+
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void primitiveGetterOnMismatchedColumn() throws Exception {
+        IntVector integer = new IntVector("int", this.allocator);
+        integer.allocateNew(1);
+        integer.set(0, 7);
+        integer.setValueCount(1);
+
+        try (ResultSet rs = this.resultSet(List.of(integer))) {
+            assertTrue(rs.next());
+            assertEquals("7", rs.getString(1));
+            assertThrows(SQLException.class, () -> rs.getLong(1));
+        }
+    }
+
+    @Test
+    void temporalGetters() throws Exception {
+        Instant instant = Instant.parse("2025-06-15T10:30:00.123456Z");
+        long micros = instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+
+        DateDayVector date = new DateDayVector("date", this.allocator);
+        TimeStampMicroVector timestamp = new TimeStampMicroVector("timestamp", this.allocator);
+        TimeStampMicroTZVector timestampTz = new TimeStampMicroTZVector("timestamp_tz", this.allocator, "UTC");
+        List<FieldVector> vectors = List.of(date, timestamp, timestampTz);
+        vectors.forEach(v -> v.allocateNew());
+
+        date.set(0, (int) LocalDate.of(2025, 6, 15).toEpochDay());
+        timestamp.set(0, micros);
+        timestampTz.set(0, micros);
+        vectors.forEach(v -> v.setValueCount(2));
+
+        try (ResultSet rs = this.resultSet(vectors)) {
+            assertTrue(rs.next());
+            assertEquals(Date.valueOf(LocalDate.of(2025, 6, 15)), rs.getDate(1));
+            assertEquals(Timestamp.from(instant), rs.getTimestamp(2));
+            assertEquals(Timestamp.from(instant), rs.getTimestamp(3));
+            assertEquals(Timestamp.from(instant), rs.getObject(3));
+
+            assertEquals(instant, rs.getObject(2, Instant.class));
+            assertEquals(LocalDateTime.ofInstant(instant, ZoneOffset.UTC), rs.getObject(2, LocalDateTime.class));
+            assertEquals(OffsetDateTime.ofInstant(instant, ZoneOffset.UTC), rs.getObject(3, OffsetDateTime.class));
+            assertEquals(LocalDate.of(2025, 6, 15), rs.getObject(1, LocalDate.class));
+            assertEquals(LocalDate.of(2025, 6, 15), rs.getObject(2, LocalDate.class));
+            assertEquals(Date.valueOf(LocalDate.of(2025, 6, 15)), rs.getObject(1, Date.class));
+            assertThrows(SQLException.class, () -> rs.getObject(1, Integer.class));
+
+            WherobotsResultSet wrs = rs.unwrap(WherobotsResultSet.class);
+            assertEquals(micros, wrs.getEpochMicros(2));
+            assertEquals(micros, wrs.getEpochMicros("timestamp_tz"));
+            assertEquals(LocalDate.of(2025, 6, 15).toEpochDay() * 86_400_000_000L, wrs.getEpochMicros(1));
+
+            // Timestamps without a time zone are placed in the calendar's zone; zoned ones are absolute.
+            Calendar paris = Calendar.getInstance(TimeZone.getTimeZone("Europe/Paris"));
+            assertEquals(Timestamp.from(instant.minusSeconds(2 * 3600)), rs.getTimestamp(2, paris));
+            assertEquals(Timestamp.from(instant), rs.getTimestamp(3, paris));
+            assertEquals(Instant.parse("2025-06-14T22:00:00Z").toEpochMilli(), rs.getDate(1, paris).getTime());
+
+            assertTrue(rs.next());
+            assertNull(rs.getDate(1));
+            assertTrue(rs.wasNull());
+            assertNull(rs.getTimestamp(2));
+            assertTrue(rs.wasNull());
+            assertNull(rs.getObject(2, Instant.class));
+            assertEquals(0L, rs.unwrap(WherobotsResultSet.class).getEpochMicros(3));
+            assertTrue(rs.wasNull());
+        }
+    }
+
+    private VarCharVector strings(String name, String... values) {
+        VarCharVector vector = new VarCharVector(name, this.allocator);
+        vector.allocateNew(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                vector.set(i, values[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        vector.setValueCount(values.length);
+        return vector;
+    }
+
+    @Test
+    void dictionaryEncodedColumn() throws Exception {
+        try (VarCharVector countries = this.strings("countries", "FR", "US");
+             VarCharVector raw = this.strings("country", "US", "FR", "US", null)) {
+            Dictionary dictionary = new Dictionary(countries, new DictionaryEncoding(1L, false, null));
+            FieldVector encoded = (FieldVector) DictionaryEncoder.encode(raw, dictionary);
+
+            try (ResultSet rs = this.resultSet(List.of(encoded), new DictionaryProvider.MapDictionaryProvider(dictionary))) {
+                assertTrue(rs.next());
+                String first = rs.getString(1);
+                assertEquals("US", first);
+                assertFalse(rs.wasNull());
+
+                assertTrue(rs.next());
+                assertEquals("FR", rs.getString(1));
+                assertEquals("FR", rs.getObject(1).toString());
+
+                // Entries are decoded once, then reused.
+                assertTrue(rs.next());
+                assertSame(first, rs.getString("country"));
+
+                assertTrue(rs.next());
+                assertNull(rs.getString(1));
+                assertTrue(rs.wasNull());
+
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    void nestedDictionaryEncodedColumn() throws Exception {
+        try (VarCharVector countries = this.strings("countries", "FR", "US");
+             VarCharVector raw = this.strings("country", "US", "FR", null)) {
+            Dictionary dictionary = new Dictionary(countries, new DictionaryEncoding(1L, false, null));
+
+            // A struct column whose only attribute is the dictionary-encoded country.
+            StructVector place = new StructVector("place", this.allocator,
+                    FieldType.nullable(ArrowType.Struct.INSTANCE), null);
+            try (FieldVector encoded = (FieldVector) DictionaryEncoder.encode(raw, dictionary)) {
+                place.initializeChildrenFromFields(List.of(encoded.getField()));
+                place.allocateNew();
+                encoded.makeTransferPair(place.getChild("country")).transfer();
+            }
+            for (int row = 0; row < 3; row++) {
+                place.setIndexDefined(row);
+            }
+            place.setValueCount(3);
+
+            DictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider(dictionary);
+            try (ResultSet rs = this.resultSet(List.of(place), dictionaries)) {
+                assertTrue(rs.next());
+                Struct struct = rs.getObject(1, Struct.class);
+                assertEquals("US", ((WherobotsStruct) struct).getAttribute("country", String.class));
+                assertEquals("US", ((Map<?, ?>) rs.getObject(1)).get("country").toString());
+
+                assertTrue(rs.next());
+                assertArrayEquals(new Object[]{"FR"}, Stream.of(rs.getObject(1, Struct.class).getAttributes())
+                        .map(Object::toString).toArray());
+
+                assertTrue(rs.next());
+                assertNull(((Map<?, ?>) rs.getObject(1)).get("country"));
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    void binaryViews() throws Exception {
+        byte[] wkb = {0x01, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xf0, 0x3f};
+        VarBinaryVector geometry = new VarBinaryVector("geometry", this.allocator);
+        geometry.allocateNew(2);
+        geometry.set(0, wkb);
+        geometry.setValueCount(2);
+
+        try (ResultSet rs = this.resultSet(List.of(geometry))) {
+            WherobotsResultSet wrs = rs.unwrap(WherobotsResultSet.class);
+
+            assertTrue(rs.next());
+            ByteBuffer view = wrs.getByteBuffer(1);
+            assertTrue(view.isReadOnly());
+            assertTrue(view.isDirect());
+            byte[] viewed = new byte[view.remaining()];
+            view.get(viewed);
+            assertArrayEquals(wkb, viewed);
+            assertArrayEquals(wkb, rs.getBinaryStream(1).readAllBytes());
+            assertArrayEquals(wkb, rs.getBytes("geometry"));
+
+            assertTrue(rs.next());
+            assertNull(wrs.getByteBuffer(1));
+            assertTrue(rs.wasNull());
+            assertNull(rs.getBinaryStream(1));
+        }
+    }
+
+    @Test
+    void staleBinaryStream() throws Exception {
+        // Two batches of a single binary value each.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VarBinaryVector geometry = new VarBinaryVector("geometry", this.allocator);
+        try (VectorSchemaRoot root = new VectorSchemaRoot(List.of(geometry));
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+            writer.start();
+            geometry.setSafe(0, new byte[]{1, 2});
+            root.setRowCount(1);
+            writer.writeBatch();
+            geometry.setSafe(0, new byte[]{3});
+            root.setRowCount(1);
+            writer.writeBatch();
+            writer.end();
+        }
+
+        try (ResultSet rs = new WherobotsResultSet(null,
+                new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), this.allocator))) {
+            assertTrue(rs.next());
+            InputStream stream = rs.getBinaryStream(1);
+            assertEquals(1, stream.read());
+
+            // The stream's batch may be released once the result set moves on to the next one.
+            assertTrue(rs.next());
+            assertThrows(IOException.class, stream::read);
+            assertArrayEquals(new byte[]{3}, rs.getBinaryStream(1).readAllBytes());
+        }
+    }
+
+    @Test
+    void nestedViews() throws Exception {
+        ListVector values = ListVector.empty("values", this.allocator);
+        UnionListWriter writer = values.getWriter();
+        writer.setPosition(0);
+        writer.startList();
+        writer.integer().writeInt(1);
+        writer.integer().writeInt(2);
+        writer.endList();
+        writer.setPosition(1);
+        writer.startList();
+        writer.endList();
+        values.setValueCount(3);
+
+        StructVector point = StructVector.empty("point", this.allocator);
+        IntVector x = point.addOrGet("x", FieldType.nullable(new ArrowType.Int(32, true)), IntVector.class);
+        VarCharVector label = point.addOrGet("label", FieldType.nullable(ArrowType.Utf8.INSTANCE), VarCharVector.class);
+        point.allocateNew();
+        point.setIndexDefined(0);
+        x.setSafe(0, 7);
+        label.setSafe(0, "a".getBytes(StandardCharsets.UTF_8));
+        point.setNull(1);
+        point.setIndexDefined(2);
+        x.setSafe(2, 9);
+        point.setValueCount(3);
+
+        try (ResultSet rs = this.resultSet(List.of(values, point))) {
+            assertTrue(rs.next());
+            Array array = rs.getArray(1);
+            assertEquals(Types.INTEGER, array.getBaseType());
+            assertArrayEquals(new Object[]{1, 2}, (Object[]) array.getArray());
+            assertArrayEquals(new Object[]{2}, (Object[]) array.getArray(2, 5));
+            assertEquals(2, ((WherobotsArray) array).get(1));
+            assertEquals(2, ((WherobotsArray) array).length());
+            assertInstanceOf(List.class, rs.getObject(1));
+
+            Struct struct = rs.getObject(2, Struct.class);
+            assertArrayEquals(new Object[]{7, "a"}, struct.getAttributes());
+            assertEquals(7, ((WherobotsStruct) struct).getAttribute("X"));
+            assertEquals("a", ((WherobotsStruct) struct).getAttribute("label", String.class));
+            assertInstanceOf(Map.class, rs.getObject(2));
+            assertThrows(SQLDataException.class, () -> rs.getArray(2));
+
+            assertTrue(rs.next());
+            assertEquals(0, ((WherobotsArray) rs.getArray("values")).length());
+            assertNull(rs.getObject(2, Struct.class));
+            assertTrue(rs.wasNull());
+
+            assertTrue(rs.next());
+            assertNull(rs.getArray(1));
+            assertTrue(rs.wasNull());
+            assertArrayEquals(new Object[]{9, null}, rs.getObject(2, Struct.class).getAttributes());
+        }
+    }
+
+    /**
+     * A row of a list column and a struct column: [n + 1, n + 2] and {x: n}.
+     */
+    private List<FieldVector> nestedRow(int n) {
+        ListVector values = ListVector.empty("values", this.allocator);
+        UnionListWriter writer = values.getWriter();
+        writer.setPosition(0);
+        writer.startList();
+        writer.integer().writeInt(n + 1);
+        writer.integer().writeInt(n + 2);
+        writer.endList();
+        values.setValueCount(1);
+
+        StructVector point = StructVector.empty("point", this.allocator);
+        IntVector x = point.addOrGet("x", FieldType.nullable(new ArrowType.Int(32, true)), IntVector.class);
+        point.allocateNew();
+        point.setIndexDefined(0);
+        x.setSafe(0, n);
+        point.setValueCount(1);
+        return List.of(values, point);
+    }
+
+    @Test
+    void staleViews() throws Exception {
+        // Two batches of a single row each, with n = 0 then n = 10.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VectorSchemaRoot root = new VectorSchemaRoot(this.nestedRow(0));
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+            writer.start();
+            root.setRowCount(1);
+            writer.writeBatch();
+            List<FieldVector> next = this.nestedRow(10);
+            for (int i = 0; i < next.size(); i++) {
+                try (FieldVector vector = next.get(i)) {
+                    vector.makeTransferPair(root.getVector(i)).transfer();
+                }
+            }
+            root.setRowCount(1);
+            writer.writeBatch();
+            writer.end();
+        }
+
+        try (ResultSet rs = new WherobotsResultSet(null,
+                new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), this.allocator))) {
+            assertTrue(rs.next());
+            Array array = rs.getArray(1);
+            Struct struct = rs.getObject(2, Struct.class);
+            assertArrayEquals(new Object[]{1, 2}, (Object[]) array.getArray());
+            assertArrayEquals(new Object[]{0}, struct.getAttributes());
+
+            // The views' accessors are now bound to the next batch.
+            assertTrue(rs.next());
+            assertThrows(SQLException.class, array::getArray);
+            assertThrows(SQLException.class, () -> ((WherobotsArray) array).get(0));
+            assertThrows(SQLException.class, struct::getAttributes);
+            assertThrows(SQLException.class, () -> ((WherobotsStruct) struct).getAttribute("x"));
+
+            assertArrayEquals(new Object[]{11, 12}, (Object[]) rs.getArray(1).getArray());
+            assertEquals(10, ((WherobotsStruct) rs.getObject(2, Struct.class)).getAttribute("x"));
+        }
+    }
+
+    @Test
+    void primitiveArrays() throws Exception {
+        FixedSizeListVector embedding = FixedSizeListVector.empty("embedding", 3, this.allocator);
+        Float4Vector floats = (Float4Vector) embedding.addOrGetVector(
+                FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE))).getVector();
+        embedding.allocateNew();
+        embedding.setNotNull(0);
+        embedding.setNotNull(1);
+        floats.setSafe(0, 1.0f);
+        floats.setSafe(1, 2.0f);
+        floats.setSafe(2, 3.0f);
+        floats.setSafe(3, 4.0f);
+        floats.setNull(4);
+        floats.setSafe(5, 6.0f);
+        embedding.setValueCount(2);
+
+        ListVector coordinates = ListVector.empty("coordinates", this.allocator);
+        UnionListWriter writer = coordinates.getWriter();
+        writer.setPosition(0);
+        writer.startList();
+        writer.float8().writeFloat8(1.5);
+        writer.float8().writeFloat8(2.5);
+        writer.endList();
+        coordinates.setValueCount(2);
+
+        try (ResultSet rs = this.resultSet(List.of(embedding, coordinates))) {
+            WherobotsResultSet wrs = rs.unwrap(WherobotsResultSet.class);
+
+            assertTrue(rs.next());
+            float[] vector = new float[4];
+            assertEquals(3, wrs.getFloats(1, vector));
+            assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f, 0.0f}, vector);
+            assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f}, (float[]) rs.getArray(1).getArray());
+            assertThrows(SQLDataException.class, () -> wrs.getFloats(1, new float[2]));
+
+            double[] point = new double[2];
+            assertEquals(2, wrs.getDoubles("coordinates", point));
+            assertArrayEquals(new double[]{1.5, 2.5}, point);
+            assertArrayEquals(new double[]{1.5, 2.5}, (double[]) rs.getArray(2).getArray());
+            assertThrows(SQLDataException.class, () -> wrs.getDoubles(1, new double[3]));
+
+            assertTrue(rs.next());
+            assertArrayEquals(new Object[]{4.0f, null, 6.0f}, (Object[]) rs.getArray(1).getArray());
+            assertThrows(SQLDataException.class, () -> wrs.getFloats(1, vector));
+            assertEquals(0, wrs.getDoubles(2, point));
+            assertTrue(rs.wasNull());
+        }
+    }
+
+    /**
+     * Writes a stream of batches of the given sizes, with a single column of consecutive ids across batches.
+     */
+    private byte[] idBatches(int... sizes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IntVector ids = new IntVector("id", this.allocator);
+             VectorSchemaRoot root = new VectorSchemaRoot(List.of(ids));
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+            writer.start();
+            int id = 0;
+            for (int size : sizes) {
+                ids.allocateNew(size);
+                for (int i = 0; i < size; i++) {
+                    ids.set(i, id++);
+                }
+                root.setRowCount(size);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void batchIteration() throws Exception {
+        byte[] batches = this.idBatches(3, 0, 2, 4);
+        try (ResultSet rs = new WherobotsResultSet(null,
+                new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator))) {
+            WherobotsResultSet wrs = rs.unwrap(WherobotsResultSet.class);
+
+            VectorSchemaRoot batch = wrs.nextBatch();
+            assertEquals(3, batch.getRowCount());
+            assertEquals(2, ((IntVector) batch.getVector("id")).get(2));
+            assertEquals(3, rs.getRow());
+
+            // Row-wise iteration picks up after the batch, over the empty one.
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+            assertEquals(4, rs.getRow());
+
+            // The rest of the current batch is skipped.
+            assertSame(batch, wrs.nextBatch());
+            assertEquals(4, batch.getRowCount());
+            assertEquals(5, ((IntVector) batch.getVector(0)).get(0));
+            assertEquals(9, rs.getRow());
+
+            assertNull(wrs.nextBatch());
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void prefetchedBatches() throws Exception {
+        byte[] batches = this.idBatches(3, 0, 2, 4, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+            BatchSource source = new PrefetchingBatchSource(reader, this.allocator, 2, executor);
+            try (ResultSet rs = new WherobotsResultSet(null, source)) {
+                WherobotsResultSet wrs = rs.unwrap(WherobotsResultSet.class);
+                assertEquals(0, wrs.getVectorSchemaRoot().getRowCount());
+
+                for (int id = 0; id < 5; id++) {
+                    assertTrue(rs.next());
+                    assertEquals(id, rs.getInt("id"));
+                }
+
+                // Each batch comes in a root of its own.
+                VectorSchemaRoot batch = wrs.nextBatch();
+                assertNotSame(batch, wrs.nextBatch());
+                assertEquals(1, wrs.getVectorSchemaRoot().getRowCount());
+                assertEquals(10, rs.getRow());
+
+                assertFalse(rs.next());
+            }
+
+            // Closing before the end releases the batches read ahead.
+            reader = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+            try (ResultSet rs = new WherobotsResultSet(null,
+                    new PrefetchingBatchSource(reader, this.allocator, 2, executor))) {
+                assertTrue(rs.next());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Two batches of a dictionary-encoded column of countries: US, FR, then FR, null, US.
+     */
+    private byte[] countryBatches() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VarCharVector countries = this.strings("countries", "FR", "US");
+             VarCharVector first = this.strings("country", "US", "FR");
+             VarCharVector second = this.strings("country", "FR", null, "US")) {
+            Dictionary dictionary = new Dictionary(countries, new DictionaryEncoding(1L, false, null));
+            try (FieldVector encoded = (FieldVector) DictionaryEncoder.encode(first, dictionary);
+                 VectorSchemaRoot root = new VectorSchemaRoot(List.of(encoded));
+                 ArrowStreamWriter writer = new ArrowStreamWriter(
+                         root, new DictionaryProvider.MapDictionaryProvider(dictionary), out)) {
+                writer.start();
+                root.setRowCount(2);
+                writer.writeBatch();
+                try (FieldVector next = (FieldVector) DictionaryEncoder.encode(second, dictionary)) {
+                    next.makeTransferPair(encoded).transfer();
+                }
+                root.setRowCount(3);
+                writer.writeBatch();
+                writer.end();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void dictionaryEncodedColumnIsDecodedAheadAndInStore(@TempDir Path directory) throws Exception {
+        byte[] batches = this.countryBatches();
+        String[] expected = {"US", "FR", "FR", null, "US"};
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ArrowStreamReader prefetched = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+        try (ResultSet rs = new WherobotsResultSet(null,
+                new PrefetchingBatchSource(prefetched, this.allocator, 2, executor))) {
+            VectorSchemaRoot root = rs.unwrap(WherobotsResultSet.class).getVectorSchemaRoot();
+            assertInstanceOf(VarCharVector.class, root.getVector(0));
+            for (String country : expected) {
+                assertTrue(rs.next());
+                assertEquals(country, rs.getString(1));
+            }
+            assertFalse(rs.next());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Holds the first batch in memory, and spills the second one.
+        ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+        BatchStore store = BatchStore.drain(new StreamBatchSource(reader), this.allocator, 10, directory);
+        assertEquals(1, store.spillStats().batches());
+        try (ResultSet rs = new WherobotsResultSet(null, new StoredBatchSource(store, this.allocator),
+                ResultSet.TYPE_SCROLL_INSENSITIVE)) {
+            VectorSchemaRoot root = rs.unwrap(WherobotsResultSet.class).getVectorSchemaRoot();
+            assertInstanceOf(VarCharVector.class, root.getVector(0));
+            for (int row = expected.length; row > 0; row--) {
+                assertTrue(rs.absolute(row));
+                assertEquals(expected[row - 1], rs.getString(1));
+            }
+        }
+    }
+
+    @Test
+    void memoryLimit() throws Exception {
+        byte[] batches = this.idBatches(10, 100_000);
+        try (BufferAllocator limited = this.allocator.newChildAllocator("limited", 0, 64 * 1024);
+             ResultSet rs = new WherobotsResultSet(null,
+                     new ArrowStreamReader(new ByteArrayInputStream(batches), limited))) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(rs.next());
+            }
+
+            // The second batch doesn't fit.
+            SQLException e = assertThrows(SQLException.class, rs::next);
+            assertEquals("53200", e.getSQLState());
+
+            MemoryStats stats = MemoryStats.of(limited);
+            assertEquals(64 * 1024, stats.limit());
+            assertTrue(stats.peak() > 0);
+            assertTrue(stats.allocated() <= stats.peak());
+        }
+    }
+
+    @Test
+    void spilledBatches(@TempDir Path directory) throws Exception {
+        byte[] batches = this.idBatches(3, 0, 2, 4);
+        ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+        // Holds the first two batches in memory, 13 bytes of buffers, and spills the last two.
+        BatchStore store = BatchStore.drain(new StreamBatchSource(reader), this.allocator, 20, directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+
+        try (ResultSet rs = new WherobotsResultSet(null, new StoredBatchSource(store, this.allocator))) {
+            SpillStats stats = rs.unwrap(WherobotsResultSet.class).getSpillStats();
+            assertEquals(2, stats.batches());
+            assertTrue(stats.bytes() > 0);
+
+            for (int id = 0; id < 9; id++) {
+                assertTrue(rs.next());
+                assertEquals(id, rs.getInt(1));
+            }
+            assertFalse(rs.next());
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void spilledBuffersOutliveTheirBatch(@TempDir Path directory) throws Exception {
+        byte[] batches = this.idBatches(3, 0, 2, 4);
+        ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+        try (BatchStore store = BatchStore.drain(new StreamBatchSource(reader), this.allocator, 20, directory)) {
+            // Buffers taken from a spilled batch still point into its mapping once the next one is loaded.
+            TransferPair transfer = store.load(2).getVector(0).getTransferPair(this.allocator);
+            transfer.transfer();
+            try (IntVector kept = (IntVector) transfer.getTo()) {
+                assertEquals(5, ((IntVector) store.load(3).getVector(0)).get(0));
+                assertEquals(2, kept.getValueCount());
+                assertEquals(3, kept.get(0));
+                assertEquals(4, kept.get(1));
+            }
+        }
+        assertEquals(0, this.allocator.getAllocatedMemory());
+    }
+
+    @Test
+    void scrollableBatches(@TempDir Path directory) throws Exception {
+        byte[] batches = this.idBatches(3, 0, 2, 4);
+        ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator);
+        // Scrolls across the batches held in memory and the spilled ones alike.
+        BatchStore store = BatchStore.drain(new StreamBatchSource(reader), this.allocator, 20, directory);
+
+        try (ResultSet rs = new WherobotsResultSet(null, new StoredBatchSource(store, this.allocator),
+                ResultSet.TYPE_SCROLL_INSENSITIVE)) {
+            assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, rs.getType());
+
+            assertTrue(rs.absolute(6));
+            assertEquals(5, rs.getInt(1));
+            assertTrue(rs.last());
+            assertTrue(rs.isLast());
+            assertEquals(8, rs.getInt(1));
+            assertEquals(9, rs.getRow());
+            assertTrue(rs.previous());
+            assertEquals(7, rs.getInt(1));
+
+            assertTrue(rs.absolute(-9));
+            assertTrue(rs.isFirst());
+            assertEquals(0, rs.getInt(1));
+            // Over the empty batch, into the first spilled one.
+            assertTrue(rs.relative(3));
+            assertEquals(3, rs.getInt(1));
+            assertTrue(rs.previous());
+            assertEquals(2, rs.getInt(1));
+
+            rs.afterLast();
+            assertTrue(rs.isAfterLast());
+            assertEquals(0, rs.getRow());
+            assertFalse(rs.next());
+            assertTrue(rs.previous());
+            assertEquals(8, rs.getInt(1));
+
+            assertFalse(rs.absolute(0));
+            assertTrue(rs.isBeforeFirst());
+            for (int id = 0; id < 9; id++) {
+                assertTrue(rs.next());
+                assertEquals(id, rs.getInt(1));
+            }
+            assertFalse(rs.next());
+            assertTrue(rs.first());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void forwardOnlyBatches() throws Exception {
+        byte[] batches = this.idBatches(3);
+        try (ResultSet rs = new WherobotsResultSet(null,
+                new ArrowStreamReader(new ByteArrayInputStream(batches), this.allocator))) {
+            assertEquals(ResultSet.TYPE_FORWARD_ONLY, rs.getType());
+            assertTrue(rs.next());
+            assertThrows(SQLFeatureNotSupportedException.class, rs::previous);
+            assertThrows(SQLFeatureNotSupportedException.class, () -> rs.absolute(1));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.wherobots.db.jdbc;
+
+import com.wherobots.db.DataCompression;
+import com.wherobots.db.jdbc.internal.Frame;
+import com.wherobots.db.jdbc.internal.SharedExecutors;
+import com.wherobots.db.jdbc.internal.VirtualThreads;
+import com.wherobots.db.jdbc.session.WherobotsSession;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that connections opting into virtual threads dispatch and decode their messages on virtual threads, and
+ * that statements waiting for their results from virtual threads don't pin their carriers. Skipped on runtimes
+ * without virtual threads, below Java 21: the {@code testJava21} Gradle task runs them.
+ */
+class WherobotsVirtualThreadsTest {
+
+    @BeforeEach
+    void requireVirtualThreads() {
+        assumeTrue(VirtualThreads.isSupported(), "virtual threads require Java 21 or later");
+    }
+
+    private static Properties virtualThreads() {
+        Properties props = new Properties();
+        props.setProperty(WherobotsJdbcDriver.VIRTUAL_THREADS_PROP, "true");
+        return props;
+    }
+
+    // Thread.isVirtual() is not part of the Java 17 API this test compiles against.
+    private static boolean isVirtual(Thread thread) throws Exception {
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void dispatchAndDecodeOnVirtualThreads() throws Exception {
+        AtomicReference<Thread> dispatcher = new AtomicReference<>();
+        AtomicReference<Thread> decoder = new AtomicReference<>();
+        CountDownLatch decoded = new CountDownLatch(1);
+
+        // A binary message still being received, whose content is read by the decoder.
+        InputStream message = new InputStream() {
+            @Override
+            public int read() {
+                decoder.compareAndSet(null, Thread.currentThread());
+                decoded.countDown();
+                return -1;
+            }
+        };
+        List<Frame> frames = new ArrayList<>(List.of(new Frame(null, null, message, null)));
+
+        WherobotsSession session = mock(WherobotsSession.class);
+        when(session.poll()).thenAnswer(invocation -> {
+            dispatcher.compareAndSet(null, Thread.currentThread());
+            return frames.isEmpty() ? null : frames.remove(0);
+        });
+
+        WherobotsJdbcConnection connection = new WherobotsJdbcConnection(session, virtualThreads());
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(session).setFrameListener(listener.capture());
+        listener.getValue().run();
+
+        assertTrue(decoded.await(5, TimeUnit.SECONDS), "message was not decoded");
+        assertTrue(isVirtual(dispatcher.get()), dispatcher.get().toString());
+        assertTrue(isVirtual(decoder.get()), decoder.get().toString());
+        connection.close();
+    }
+
+    @Test
+    void executeWaitsDoNotPinCarriers() throws Exception {
+        StandInSessionServer server = new StandInSessionServer(WherobotsVirtualThreadsTest::results);
+        Properties props = virtualThreads();
+        props.setProperty(WherobotsJdbcDriver.WS_URI_PROP, server.startAndGetUri());
+        props.put(WherobotsJdbcDriver.COMPRESSION_PROP, DataCompression.none);
+
+        // Many more statements waiting at once than there are carrier threads: if their waits pinned the carriers,
+        // the virtual threads dispatching and decoding their results could never run.
+        int queries = 8 * Runtime.getRuntime().availableProcessors();
+        try (Connection connection = new WherobotsJdbcDriver().connect(WherobotsJdbcDriver.URL_PREFIX + "localhost",
+                props)) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < queries; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> firstId(connection), SharedExecutors.virtual()));
+            }
+            for (CompletableFuture<Integer> result : results) {
+                assertEquals(1, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            server.stop(1000);
+        }
+    }
+
+    private static int firstId(Connection connection) {
+        try (Statement stmt = connection.createStatement()) {
+            assertTrue(isVirtual(Thread.currentThread()));
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] results() {
+        try (BufferAllocator allocator = new RootAllocator();
+             IntVector id = new IntVector("id", allocator)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (VectorSchemaRoot root = VectorSchemaRoot.of(id);
+                 ArrowStreamWriter writer = new ArrowStreamWriter(root, null, out)) {
+                writer.start();
+                id.allocateNew(1);
+                id.set(0, 1);
+                root.setRowCount(1);
+                writer.writeBatch();
+                writer.end();
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.wherobots.db.jdbc.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnIndexTest {
+
+    @Test
+    void exactMatch() {
+        ColumnIndex index = new ColumnIndex(new String[] {"id", "geometry", "name"});
+        assertEquals(0, index.indexOf("id"));
+        assertEquals(1, index.indexOf("geometry"));
+        assertEquals(2, index.indexOf("name"));
+        assertEquals(-1, index.indexOf("missing"));
+        assertEquals(-1, index.indexOf(null));
+    }
+
+    @Test
+    void caseInsensitiveFallback() {
+        ColumnIndex index = new ColumnIndex(new String[] {"ID", "Name", "name"});
+        assertEquals(0, index.indexOf("id"));
+        assertEquals(0, index.indexOf("Id"));
+        // An exact match takes precedence over an earlier column matching regardless of case.
+        assertEquals(2, index.indexOf("name"));
+        assertEquals(1, index.indexOf("Name"));
+        assertEquals(1, index.indexOf("NAME"));
+    }
+
+    @Test
+    void firstOfDuplicateNames() {
+        ColumnIndex index = new ColumnIndex(new String[] {"a", "b", "a", "B"});
+        assertEquals(0, index.indexOf("a"));
+        assertEquals(1, index.indexOf("b"));
+        assertEquals(3, index.indexOf("B"));
+        assertEquals(0, index.indexOf("A"));
+    }
+
+    @Test
+    void manyColumns() {
+        String[] names = IntStream.range(0, 200).mapToObj(i -> "column_" + i).toArray(String[]::new);
+        ColumnIndex index = new ColumnIndex(names);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(i, index.indexOf("column_" + i));
+            assertEquals(i, index.indexOf("COLUMN_" + i));
+            // Remembered from the previous lookup.
+            assertEquals(i, index.indexOf("COLUMN_" + i));
+        }
+        assertEquals(-1, index.indexOf("column_200"));
+    }
+
+    @Test
+    void noColumns() {
+        assertEquals(-1, new ColumnIndex(new String[0]).indexOf("id"));
+    }
+}
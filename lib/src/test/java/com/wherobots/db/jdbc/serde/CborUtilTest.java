@@ -0,0 +1,183 @@
+package com.wherobots.db.jdbc.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.wherobots.db.DataCompression;
+import com.wherobots.db.DataFormat;
+import com.wherobots.db.jdbc.models.Event;
+import com.wherobots.db.jdbc.models.QueryState;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborUtilTest {
+
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+
+    private static final byte[] PAYLOAD = {(byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF};
+
+    private static byte[] executionResult() throws Exception {
+        return executionResult(true);
+    }
+
+    /**
+     * @param compressionFirst whether to encode the compression ahead of the result bytes, or after them
+     */
+    private static byte[] executionResult(boolean compressionFirst) throws Exception {
+        Map<String, Object> results = new LinkedHashMap<>();
+        if (compressionFirst) {
+            results.put("compression", "zstd");
+        }
+        results.put("result_bytes", PAYLOAD);
+        if (!compressionFirst) {
+            results.put("compression", "zstd");
+        }
+        results.put("format", "arrow");
+        results.put("geo_columns", List.of("geometry"));
+
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("kind", "execution_result");
+        event.put("execution_id", "exec-1");
+        event.put("state", "succeeded");
+        event.put("results", results);
+        return CBOR.writeValueAsBytes(event);
+    }
+
+    // Hand-encoded: {"kind": "execution_result", "execution_id": "x", "results": {"compression": "none",
+    // "result_bytes": (_ h'0102' h'03')}}, with the result bytes as an indefinite-length byte string.
+    private static byte[] chunkedExecutionResult() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xa3);
+        text(out, "kind");
+        text(out, "execution_result");
+        text(out, "execution_id");
+        text(out, "x");
+        text(out, "results");
+        out.write(0xa2);
+        text(out, "compression");
+        text(out, "none");
+        text(out, "result_bytes");
+        out.writeBytes(new byte[] {0x5f, 0x42, 0x01, 0x02, 0x41, 0x03, (byte) 0xff});
+        return out.toByteArray();
+    }
+
+    private static void text(ByteArrayOutputStream out, String s) {
+        out.write(0x60 + s.length());
+        out.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void deserializeExecutionResultFromHeapBuffer() throws Exception {
+        Event event = CborUtil.deserializeEvent(ByteBuffer.wrap(executionResult()));
+
+        Event.ExecutionResultEvent ere = assertInstanceOf(Event.ExecutionResultEvent.class, event);
+        assertEquals("exec-1", ere.executionId);
+        assertEquals(QueryState.succeeded, ere.state);
+        assertEquals(DataCompression.zstd, ere.results.compression);
+        assertEquals(DataFormat.arrow, ere.results.format);
+        assertEquals(List.of("geometry"), ere.results.geoColumns);
+        assertEquals(PAYLOAD.length, ere.results.resultSize);
+        assertArrayEquals(PAYLOAD, ere.results.resultBytes.readAllBytes());
+    }
+
+    @Test
+    void resultBytesAreReadFromDirectBuffer() throws Exception {
+        byte[] encoded = executionResult();
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+
+        Event.ExecutionResultEvent ere = assertInstanceOf(
+                Event.ExecutionResultEvent.class, CborUtil.deserializeEvent(direct));
+
+        // Streamed from the frame rather than copied out of it; and the frame itself is left untouched.
+        assertInstanceOf(ByteBufferInputStream.class, ere.results.resultBytes);
+        assertArrayEquals(PAYLOAD, ere.results.resultBytes.readAllBytes());
+        assertEquals(0, direct.position());
+        assertEquals(DataCompression.zstd, ere.results.compression);
+    }
+
+    @Test
+    void resultBytesAreStreamedFromSource() throws Exception {
+        ByteArrayInputStream source = new ByteArrayInputStream(executionResult());
+
+        Event.ExecutionResultEvent ere = assertInstanceOf(
+                Event.ExecutionResultEvent.class, CborUtil.deserializeEvent(source));
+
+        assertEquals("exec-1", ere.executionId);
+        assertEquals(PAYLOAD.length, ere.results.resultSize);
+        assertEquals(DataCompression.zstd, ere.results.compression);
+        // Parsing stops at the result bytes, which are read straight from the source; the fields encoded after them
+        // are left unread.
+        assertNull(ere.results.format);
+        assertArrayEquals(PAYLOAD, ere.results.resultBytes.readAllBytes());
+        assertTrue(source.available() > 0);
+    }
+
+    @Test
+    void streamedResultBytesAreBufferedWithoutCompressionAheadOfThem() throws Exception {
+        byte[] encoded = executionResult(false);
+
+        // All fields are read from a buffer, wherever they are.
+        Event.ExecutionResultEvent buffered = assertInstanceOf(
+                Event.ExecutionResultEvent.class, CborUtil.deserializeEvent(ByteBuffer.wrap(encoded)));
+        assertEquals(DataCompression.zstd, buffered.results.compression);
+
+        // A stream can't be read past its result bytes without reading them: they are read into memory.
+        Event.ExecutionResultEvent streamed = assertInstanceOf(
+                Event.ExecutionResultEvent.class, CborUtil.deserializeEvent(new ByteArrayInputStream(encoded)));
+        assertEquals("exec-1", streamed.executionId);
+        assertEquals(DataCompression.zstd, streamed.results.compression);
+        assertEquals(List.of("geometry"), streamed.results.geoColumns);
+        assertEquals(PAYLOAD.length, streamed.results.resultSize);
+        assertArrayEquals(PAYLOAD, streamed.results.resultBytes.readAllBytes());
+    }
+
+    @Test
+    void chunkedResultBytes() throws Exception {
+        byte[] encoded = chunkedExecutionResult();
+
+        Event.ExecutionResultEvent buffered = assertInstanceOf(
+                Event.ExecutionResultEvent.class, CborUtil.deserializeEvent(ByteBuffer.wrap(encoded)));
+        assertEquals(3, buffered.results.resultSize);
+        assertArrayEquals(new byte[] {1, 2, 3}, buffered.results.resultBytes.readAllBytes());
+        assertEquals(DataCompression.none, buffered.results.compression);
+
+        Event.ExecutionResultEvent streamed = assertInstanceOf(
+                Event.ExecutionResultEvent.class, CborUtil.deserializeEvent(new ByteArrayInputStream(encoded)));
+        assertEquals(-1, streamed.results.resultSize);
+        assertArrayEquals(new byte[] {1, 2, 3}, streamed.results.resultBytes.readAllBytes());
+    }
+
+    @Test
+    void deserializeStateUpdated() throws Exception {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("kind", "state_updated");
+        event.put("execution_id", "exec-2");
+        event.put("state", "succeeded");
+        event.put("result_uri", "https://example.com/result");
+        event.put("size", 1234);
+
+        Event.StateUpdatedEvent sue = assertInstanceOf(Event.StateUpdatedEvent.class,
+                CborUtil.deserializeEvent(ByteBuffer.wrap(CBOR.writeValueAsBytes(event))));
+        assertEquals("exec-2", sue.executionId);
+        assertEquals("https://example.com/result", sue.resultUri);
+        assertEquals(1234L, sue.size);
+    }
+
+    @Test
+    void rejectsTruncatedInput() throws Exception {
+        byte[] encoded = executionResult();
+        ByteBuffer truncated = ByteBuffer.wrap(encoded, 0, encoded.length - 2);
+        MalformedEventException e = assertThrows(
+                MalformedEventException.class, () -> CborUtil.deserializeEvent(truncated));
+        // Read before the failure, so that it can be reported to its query.
+        assertEquals("exec-1", e.executionId());
+    }
+}
@@ -0,0 +1,112 @@
+package com.wherobots.db.jdbc.serde;
+
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelDecompressingStreamReaderTest {
+
+    private static final int ROWS = 10_000;
+
+    private BufferAllocator allocator;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        this.allocator = new RootAllocator();
+        this.pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.shutdownNow();
+        // Fails on any buffer left behind while decompressing.
+        this.allocator.close();
+    }
+
+    /**
+     * Writes two batches of a compressible column with a few nulls, and of an incompressible column that the writer
+     * stores uncompressed within the compressed batch.
+     */
+    private byte[] write(CompressionUtil.CodecType codec) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random random = new Random(42);
+        try (IntVector ids = new IntVector("id", this.allocator);
+             BigIntVector noise = new BigIntVector("noise", this.allocator);
+             VectorSchemaRoot root = new VectorSchemaRoot(List.of(ids, noise));
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, Channels.newChannel(out),
+                     IpcOption.DEFAULT, new CommonsCompressionFactory(), codec)) {
+            writer.start();
+            for (int batch = 0; batch < 2; batch++) {
+                ids.allocateNew(ROWS);
+                noise.allocateNew(ROWS);
+                for (int i = 0; i < ROWS; i++) {
+                    if (i % 100 == 0) {
+                        ids.setNull(i);
+                    } else {
+                        ids.set(i, batch * ROWS + i);
+                    }
+                    noise.set(i, random.nextLong());
+                }
+                root.setRowCount(ROWS);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void lz4() throws Exception {
+        this.readBack(CompressionUtil.CodecType.LZ4_FRAME);
+    }
+
+    @Test
+    void zstd() throws Exception {
+        this.readBack(CompressionUtil.CodecType.ZSTD);
+    }
+
+    private void readBack(CompressionUtil.CodecType codec) throws Exception {
+        byte[] bytes = this.write(codec);
+        Random random = new Random(42);
+
+        try (ParallelDecompressingStreamReader reader = new ParallelDecompressingStreamReader(
+                new ByteArrayInputStream(bytes), this.allocator, new CommonsCompressionFactory(), this.pool, 0)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            for (int batch = 0; batch < 2; batch++) {
+                assertTrue(reader.loadNextBatch());
+                assertEquals(ROWS, root.getRowCount());
+
+                IntVector ids = (IntVector) root.getVector("id");
+                BigIntVector noise = (BigIntVector) root.getVector("noise");
+                for (int i = 0; i < ROWS; i++) {
+                    if (i % 100 == 0) {
+                        assertTrue(ids.isNull(i));
+                    } else {
+                        assertEquals(batch * ROWS + i, ids.get(i));
+                    }
+                    assertEquals(random.nextLong(), noise.get(i));
+                }
+            }
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+}
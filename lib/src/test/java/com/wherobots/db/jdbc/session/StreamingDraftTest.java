@@ -0,0 +1,117 @@
+package com.wherobots.db.jdbc.session;
+
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.ContinuousFrame;
+import org.java_websocket.framing.DataFrame;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class StreamingDraftTest {
+
+    private static <T extends DataFrame> T frame(T frame, boolean fin, int... payload) {
+        byte[] bytes = new byte[payload.length];
+        for (int i = 0; i < payload.length; i++) {
+            bytes[i] = (byte) payload[i];
+        }
+        frame.setFin(fin);
+        frame.setPayload(ByteBuffer.wrap(bytes));
+        return frame;
+    }
+
+    @Test
+    void fragmentedBinaryMessageIsReadableBeforeFinalFragment() throws Exception {
+        List<FragmentInputStream> streams = new ArrayList<>();
+        StreamingDraft draft = (StreamingDraft) new StreamingDraft(
+                () -> new FragmentInputStream(1024, null, Long.MAX_VALUE), streams::add).copyInstance();
+        WebSocketImpl ws = mock(WebSocketImpl.class);
+
+        draft.processFrame(ws, frame(new BinaryFrame(), false, 1, 2));
+        assertEquals(1, streams.size());
+        FragmentInputStream stream = streams.get(0);
+        assertEquals(1, stream.read());
+        assertEquals(2, stream.read());
+
+        draft.processFrame(ws, frame(new ContinuousFrame(), false, 3));
+        assertEquals(3, stream.read());
+
+        draft.processFrame(ws, frame(new ContinuousFrame(), true, 4));
+        assertEquals(4, stream.read());
+        assertEquals(-1, stream.read());
+        assertEquals(1, streams.size());
+    }
+
+    @Test
+    void appendOverflowsBeyondCapacityWithoutWaiting() throws Exception {
+        FragmentInputStream stream = new FragmentInputStream(4, null, Long.MAX_VALUE);
+        stream.append(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        stream.append(ByteBuffer.wrap(new byte[] {4, 5}));
+        stream.append(ByteBuffer.wrap(new byte[] {6}));
+        assertEquals(6, stream.available());
+
+        byte[] b = new byte[8];
+        assertEquals(3, stream.read(b, 0, 8));
+        assertEquals(3, stream.read(b, 3, 5));
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6}, Arrays.copyOf(b, 6));
+
+        // Once caught up, fragments are buffered in memory again.
+        stream.append(ByteBuffer.wrap(new byte[] {7}));
+        stream.finish();
+        assertArrayEquals(new byte[] {7}, stream.readAllBytes());
+    }
+
+    @Test
+    void overflowIsBoundedAndKeptInGivenDirectory(@TempDir Path directory) throws Exception {
+        FragmentInputStream stream = new FragmentInputStream(1, directory, 2);
+        stream.append(ByteBuffer.wrap(new byte[] {1}));
+        stream.append(ByteBuffer.wrap(new byte[] {2, 3}));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+
+        // Past the limit, the message fails once what was received before has been read.
+        stream.append(ByteBuffer.wrap(new byte[] {4}));
+        byte[] b = new byte[3];
+        assertEquals(3, stream.readNBytes(b, 0, 3));
+        assertArrayEquals(new byte[] {1, 2, 3}, b);
+        assertThrows(IOException.class, stream::read);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void closeDiscardsOverflow() throws Exception {
+        FragmentInputStream stream = new FragmentInputStream(1, null, Long.MAX_VALUE);
+        stream.append(ByteBuffer.wrap(new byte[] {1}));
+        stream.append(ByteBuffer.wrap(new byte[] {2}));
+
+        stream.close();
+        stream.append(ByteBuffer.wrap(new byte[] {3}));
+        assertEquals(0, stream.available());
+        assertThrows(IOException.class, stream::read);
+    }
+
+    @Test
+    void abortFailsReaderAfterReceivedData() throws Exception {
+        FragmentInputStream stream = new FragmentInputStream(16, null, Long.MAX_VALUE);
+        stream.append(ByteBuffer.wrap(new byte[] {1}));
+        stream.abort(new IOException("WebSocket connection closed"));
+
+        assertEquals(1, stream.read());
+        IOException e = assertThrows(IOException.class, stream::read);
+        assertEquals("WebSocket connection closed", e.getMessage());
+    }
+}